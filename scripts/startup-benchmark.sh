@@ -0,0 +1,79 @@
+#!/usr/bin/env bash
+#
+# Measures how fast a fresh instance gets to work: time until POST /payments is accepted, time until
+# the first payment shows up as processed in /payments-summary, and resident memory after a warmup.
+#
+# Usage:
+#   scripts/startup-benchmark.sh ./target/payments-quarkuszin-1.0.0-SNAPSHOT-runner
+#   scripts/startup-benchmark.sh java -jar target/quarkus-app/quarkus-run.jar
+#
+# Redis and both payment processors must be reachable with the usual environment variables
+# (REDIS_URL, PAYMENT_PROCESSOR_DEFAULT_BASE_URL, PAYMENT_PROCESSOR_FALLBACK_BASE_URL).
+# PORT (9999), WARMUP_REQUESTS (1000), TIMEOUT_IN_S (60) and RESULT_FILE tune the run.
+set -euo pipefail
+
+if [ "$#" -eq 0 ]; then
+  sed -n '2,13p' "$0"
+  exit 1
+fi
+
+PORT="${PORT:-9999}"
+WARMUP_REQUESTS="${WARMUP_REQUESTS:-1000}"
+TIMEOUT_IN_S="${TIMEOUT_IN_S:-60}"
+RESULT_FILE="${RESULT_FILE:-target/startup-benchmark.json}"
+BASE_URL="http://localhost:${PORT}"
+
+now_ms() { date +%s%3N; }
+uuid() { cat /proc/sys/kernel/random/uuid 2>/dev/null || uuidgen | tr 'A-Z' 'a-z'; }
+
+pay() {
+  curl -s -o /dev/null -w '%{http_code}' -X POST "${BASE_URL}/payments" \
+    -H 'Content-Type: application/json' \
+    -d "{\"correlationId\":\"$(uuid)\",\"amount\":19.90}" || true
+}
+
+processed() {
+  curl -s "${BASE_URL}/payments-summary?from=${FROM}" \
+    | grep -o '"totalRequests":[0-9]*' | cut -d: -f2 | awk '{ sum += $1 } END { print sum + 0 }'
+}
+
+# predicates for wait_until, which re-runs them: their command substitutions expand on every try
+payment_accepted() { test "$(pay)" = "200"; }
+processed_at_least() { test "$(processed)" -ge "$1"; }
+
+wait_until() {
+  local deadline=$(( $(now_ms) + TIMEOUT_IN_S * 1000 ))
+  until "$@"; do
+    if [ "$(now_ms)" -ge "$deadline" ]; then
+      echo "Timed out waiting for: $*" >&2
+      exit 1
+    fi
+    sleep 0.01
+  done
+}
+
+mkdir -p target
+FROM="$(date -u +%Y-%m-%dT%H:%M:%S.000Z)"
+START=$(now_ms)
+PORT="${PORT}" "$@" > target/startup-benchmark.log 2>&1 &
+PID=$!
+trap 'kill "${PID}" 2>/dev/null || true' EXIT
+
+wait_until payment_accepted
+ACCEPTED_AT=$(now_ms)
+
+wait_until processed_at_least 1
+PROCESSED_AT=$(now_ms)
+
+export -f pay uuid
+export BASE_URL
+seq "${WARMUP_REQUESTS}" | xargs -P 16 -I{} bash -c 'pay > /dev/null'
+wait_until processed_at_least "$(( WARMUP_REQUESTS + 1 ))"
+WARMED_UP_AT=$(now_ms)
+
+RSS_KB=$(awk '/^VmRSS:/ { print $2 }' "/proc/${PID}/status")
+
+RESULT=$(printf '{"command":"%s","timeToFirstAcceptedMs":%d,"timeToFirstProcessedMs":%d,"warmupRequests":%d,"warmupMs":%d,"rssAfterWarmupKb":%d}' \
+  "$*" $(( ACCEPTED_AT - START )) $(( PROCESSED_AT - START )) "${WARMUP_REQUESTS}" $(( WARMED_UP_AT - PROCESSED_AT )) "${RSS_KB}")
+mkdir -p "$(dirname "${RESULT_FILE}")"
+echo "${RESULT}" | tee "${RESULT_FILE}"
@@ -0,0 +1,62 @@
+package io.andrelucas.payments;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-payment encoding work: reading the ingress body and building the processor body and
+ * timeline member.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentCodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] ingressBody;
+    private PaymentClient.PaymentClientRequest request;
+
+    @Setup
+    public void setup() {
+        String correlationId = UUID.randomUUID().toString();
+        ingressBody = ("{\"correlationId\":\"" + correlationId + "\",\"amount\":19.90}").getBytes(StandardCharsets.US_ASCII);
+        request = new PaymentClient.PaymentClientRequest(correlationId, 1990, 1_752_000_000_123L);
+    }
+
+    @Benchmark
+    public PaymentRequest readPaymentRequest() throws IOException {
+        return objectMapper.readValue(ingressBody, PaymentRequest.class);
+    }
+
+    @Benchmark
+    public PaymentRequestDecoder.Decoded decodePaymentRequest() {
+        return PaymentRequestDecoder.decode(ingressBody);
+    }
+
+    @Benchmark
+    public void encodePayload(final Blackhole blackhole) {
+        PaymentPayloadEncoder.Payload payload = PaymentPayloadEncoder.encode(request);
+        blackhole.consume(payload.processorBody());
+        blackhole.consume(payload.timelineMember(Processor.DEFAULT, request.amountInCents()));
+        PaymentPayloadEncoder.release(payload);
+    }
+}
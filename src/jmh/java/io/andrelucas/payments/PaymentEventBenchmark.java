@@ -0,0 +1,76 @@
+package io.andrelucas.payments;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.impl.types.BulkType;
+import io.vertx.redis.client.impl.types.MultiType;
+import io.vertx.mutiny.redis.client.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing an XREADGROUP reply shaped like the ones {@link PaymentProducer} writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentEventBenchmark {
+
+    @Param({"1", "10", "100"})
+    int count;
+
+    private Response reply;
+
+    @Setup
+    public void setup() {
+        MultiType entries = MultiType.create(count, false);
+        long requestedAt = 1_752_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            MultiType fields = MultiType.create(6, false);
+            fields.add(bulk("correlationId"));
+            fields.add(bulk(UUID.randomUUID().toString()));
+            fields.add(bulk("amount"));
+            fields.add(bulk("19.90"));
+            fields.add(bulk("requestedAt"));
+            fields.add(bulk(String.valueOf(requestedAt + i)));
+
+            MultiType entry = MultiType.create(2, false);
+            entry.add(bulk((requestedAt + i) + "-0"));
+            entry.add(fields);
+            entries.add(entry);
+        }
+
+        MultiType stream = MultiType.create(2, false);
+        stream.add(bulk("payments_stream"));
+        stream.add(entries);
+
+        MultiType streams = MultiType.create(1, false);
+        streams.add(stream);
+        reply = Response.newInstance(streams);
+    }
+
+    @Benchmark
+    public List<PaymentConsumer.PaymentEvent> parse() {
+        return PaymentConsumer.PaymentEvent.from(reply, new ArrayList<>());
+    }
+
+    private static BulkType bulk(final String value) {
+        return BulkType.create(Buffer.buffer(value), false);
+    }
+}
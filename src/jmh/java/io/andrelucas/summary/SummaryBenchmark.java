@@ -0,0 +1,74 @@
+package io.andrelucas.summary;
+
+import io.andrelucas.payments.PaymentClient;
+import io.andrelucas.payments.PaymentPayloadEncoder;
+import io.andrelucas.payments.Processor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.impl.types.BulkType;
+import io.vertx.redis.client.impl.types.MultiType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning recorded payments into a {@link PaymentSummaryResponse}: decoding a timeline
+ * ZRANGEBYSCORE reply, and a range query on the node-local ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBenchmark {
+
+    private static final long START = 1_752_000_000_000L;
+
+    @Param({"1000", "10000", "100000"})
+    int payments;
+
+    private MultiType timeline;
+    private PaymentLedger ledger;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        timeline = MultiType.create(payments, false);
+        ledger = new PaymentLedger();
+
+        for (int i = 0; i < payments; i++) {
+            long cents = 1 + random.nextLong(100_000);
+            long requestedAt = START + i;
+            Processor processor = random.nextInt(10) == 0 ? Processor.FALLBACK : Processor.DEFAULT;
+
+            PaymentPayloadEncoder.Payload payload = PaymentPayloadEncoder.encode(
+                    new PaymentClient.PaymentClientRequest(UUID.randomUUID().toString(), cents, requestedAt));
+            timeline.add(BulkType.create(Buffer.buffer(payload.timelineMember(processor, cents)), false));
+            PaymentPayloadEncoder.release(payload);
+
+            ledger.record(requestedAt, processor == Processor.DEFAULT, cents);
+        }
+    }
+
+    @Benchmark
+    public PaymentSummaryResponse decodeTimeline() {
+        return TimelineDecoder.decode(timeline, new SummaryTotals()).toResponse();
+    }
+
+    @Benchmark
+    public PaymentSummaryResponse ledgerRange() {
+        return ledger.summarize(START + payments / 4, START + payments * 3L / 4).toResponse();
+    }
+}
@@ -1,30 +1,51 @@
 package io.andrelucas;
 
+import io.andrelucas.payments.PaymentScripts;
 import io.quarkus.runtime.Startup;
+import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.redis.client.Command;
 import io.vertx.mutiny.redis.client.Redis;
 import io.vertx.mutiny.redis.client.Request;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates the payments stream and its consumer group and loads the pipeline's Lua scripts.
+ * {@link #ready()} completes once both are done; consumers start from it and the readiness check
+ * reports it, so nothing waits on a fixed sleep. Redis may still be coming up with the containers,
+ * so failures are retried.
+ */
 @Startup
 @ApplicationScoped
 public class RedisInitializer {
     private static final Logger log = LoggerFactory.getLogger(RedisInitializer.class);
     private final Redis redis;
+    private final Vertx vertx;
+    private final long retryInMs;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
 
-    public RedisInitializer(Redis redis) {
+    public RedisInitializer(Redis redis,
+                            Vertx vertx,
+                            @ConfigProperty(name = "app.redis-init-retry-in-ms") long retryInMs) {
         this.redis = redis;
+        this.vertx = vertx;
+        this.retryInMs = retryInMs;
     }
 
-    @Inject
-    public void initializeRedis() {
+    @PostConstruct
+    void initializeRedis() {
         log.info("Initializing Redis streams and consumer groups...");
         createConsumerGroup();
     }
 
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
 
     private void createConsumerGroup() {
         Request xgroupRequest = Request.cmd(Command.XGROUP)
@@ -34,15 +55,30 @@ public class RedisInitializer {
                 .arg("0")
                 .arg("MKSTREAM");
         redis.send(xgroupRequest)
-                .onFailure()
-                .invoke(error -> {
-                    if (error.getMessage().contains("BUSYGROUP")) {
+                .subscribe()
+                .with(success -> {
+                    log.info("Consumer group 'payments_group' created successfully");
+                    loadScripts();
+                }, error -> {
+                    if (String.valueOf(error.getMessage()).contains("BUSYGROUP")) {
                         log.info("Consumer group 'payments_group' already exists");
+                        loadScripts();
                     } else {
-                        log.error("Error creating consumer group: {}", error.getMessage());
+                        log.error("Error creating consumer group, retrying in {}ms: {}", retryInMs, error.getMessage());
+                        vertx.setTimer(retryInMs, id -> createConsumerGroup());
                     }
-                })
+                });
+    }
+
+    private void loadScripts() {
+        redis.batch(PaymentScripts.ALL.stream().map(RedisScript::load).toList())
                 .subscribe()
-                .with(success -> log.info("Consumer group 'payments_group' created successfully"));
+                .with(loaded -> {
+                    log.info("Loaded {} Redis scripts", loaded.size());
+                    ready.complete(null);
+                }, error -> {
+                    log.error("Error loading Redis scripts, retrying in {}ms: {}", retryInMs, error.getMessage());
+                    vertx.setTimer(retryInMs, id -> loadScripts());
+                });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package io.andrelucas;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * Not ready until {@link RedisInitializer} has the consumer group in place.
+ */
+@Readiness
+@ApplicationScoped
+public class RedisReadinessCheck implements HealthCheck {
+
+    private final RedisInitializer redisInitializer;
+
+    public RedisReadinessCheck(final RedisInitializer redisInitializer) {
+        this.redisInitializer = redisInitializer;
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("payments-stream")
+                .status(redisInitializer.ready().isDone() && !redisInitializer.ready().isCompletedExceptionally())
+                .build();
+    }
+}
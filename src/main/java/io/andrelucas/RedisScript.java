@@ -0,0 +1,81 @@
+package io.andrelucas;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Lua script called by its SHA1 with EVALSHA, so only the digest travels with each call.
+ * {@link RedisInitializer} loads the scripts at startup; if Redis lost them anyway (restart,
+ * SCRIPT FLUSH) the call is sent again with the full source, which also reloads it.
+ */
+public final class RedisScript {
+
+    private final String source;
+    private final String sha1;
+
+    public RedisScript(final String source) {
+        this.source = source;
+        this.sha1 = sha1(source);
+    }
+
+    public String sha1() {
+        return sha1;
+    }
+
+    Request load() {
+        return Request.cmd(Command.SCRIPT).arg("LOAD").arg(source);
+    }
+
+    /**
+     * @param args adds the keys and then the arguments to the request
+     */
+    public Uni<Response> call(final Redis redis, final int numKeys, final Consumer<Request> args) {
+        return redis.send(request(Command.EVALSHA, sha1, numKeys, args))
+                .onFailure(RedisScript::isNoScript)
+                .recoverWithUni(() -> redis.send(request(Command.EVAL, source, numKeys, args)));
+    }
+
+    /**
+     * Pipelines one call per element of {@code calls}.
+     */
+    public Uni<List<Response>> batch(final Redis redis, final int numKeys, final List<? extends Consumer<Request>> calls) {
+        return redis.batch(requests(Command.EVALSHA, sha1, numKeys, calls))
+                .onFailure(RedisScript::isNoScript)
+                .recoverWithUni(() -> redis.batch(requests(Command.EVAL, source, numKeys, calls)));
+    }
+
+    private static List<Request> requests(final Command command, final String script, final int numKeys,
+                                          final List<? extends Consumer<Request>> calls) {
+        return calls.stream().map(args -> request(command, script, numKeys, args)).toList();
+    }
+
+    private static Request request(final Command command, final String script, final int numKeys,
+                                   final Consumer<Request> args) {
+        Request request = Request.cmd(command).arg(script).arg(numKeys);
+        args.accept(request);
+        return request;
+    }
+
+    private static boolean isNoScript(final Throwable e) {
+        return String.valueOf(e.getMessage()).startsWith("NOSCRIPT");
+    }
+
+    private static String sha1(final String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.andrelucas.metrics;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+
+@Path("/metrics")
+public class MetricsResource {
+
+    private final PipelineMetrics pipelineMetrics;
+
+    public MetricsResource(final PipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @GET
+    @Produces("text/plain; version=0.0.4")
+    public String scrape() {
+        return pipelineMetrics.scrape();
+    }
+}
@@ -0,0 +1,220 @@
+package io.andrelucas.metrics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms for the payment pipeline, from ingress to the processors and the summary.
+ * Durations are recorded in microseconds and exported in seconds on {@code /metrics}.
+ */
+@ApplicationScoped
+public class PipelineMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final LongAdder ingressAccepted = new LongAdder();
+    private final LongAdder ingressRejected = new LongAdder();
+    private final LongAdder ingressDuplicate = new LongAdder();
+    private final LongAdder ingressMalformed = new LongAdder();
+    private final Histogram producerFlush = new Histogram();
+    private final Histogram producerBatchSize = new Histogram();
+    private final Histogram consumerBatchSize = new Histogram();
+    private final AtomicLong streamPending = new AtomicLong();
+    private final AtomicLong streamLength = new AtomicLong();
+    private final AtomicLong streamMemory = new AtomicLong();
+    private final LongAdder streamTrimmed = new LongAdder();
+    private final LongAdder streamReclaimedBytes = new LongAdder();
+    private final LongAdder streamReclaimed = new LongAdder();
+    private final LongAdder streamDeadLettered = new LongAdder();
+    private final Histogram summary = new Histogram();
+    private final ProcessorMetrics defaultProcessor = new ProcessorMetrics("default");
+    private final ProcessorMetrics fallbackProcessor = new ProcessorMetrics("fallback");
+
+    public void ingress(final boolean accepted) {
+        (accepted ? ingressAccepted : ingressRejected).increment();
+    }
+
+    public void ingressDuplicate() {
+        ingressDuplicate.increment();
+    }
+
+    public void ingressMalformed() {
+        ingressMalformed.increment();
+    }
+
+    public void producerFlush(final int batchSize, final long elapsedNanos) {
+        producerBatchSize.record(batchSize);
+        producerFlush.record(elapsedNanos / 1_000);
+    }
+
+    public void consumerBatch(final int size) {
+        consumerBatchSize.record(size);
+    }
+
+    public void streamPending(final long pending) {
+        streamPending.set(pending);
+    }
+
+    public void stream(final long length, final long memoryInBytes) {
+        streamLength.set(length);
+        streamMemory.set(memoryInBytes);
+    }
+
+    public void streamReclaimed(final int entries) {
+        streamReclaimed.add(entries);
+    }
+
+    public void streamDeadLettered(final int entries) {
+        streamDeadLettered.add(entries);
+    }
+
+    public void streamTrimmed(final long entries, final long reclaimedBytes) {
+        streamTrimmed.add(entries);
+        streamReclaimedBytes.add(Math.max(0, reclaimedBytes));
+    }
+
+    public void summary(final long elapsedNanos) {
+        summary.record(elapsedNanos / 1_000);
+    }
+
+    public void processorResponse(final String processor, final int statusCode, final long elapsedNanos) {
+        ProcessorMetrics metrics = processor(processor);
+        metrics.latency.record(elapsedNanos / 1_000);
+        if (statusCode / 100 == 2) {
+            metrics.success.increment();
+        } else if (statusCode / 100 == 4) {
+            metrics.clientError.increment();
+        } else {
+            metrics.serverError.increment();
+        }
+    }
+
+    public void processorTimeout(final String processor, final long elapsedNanos) {
+        ProcessorMetrics metrics = processor(processor);
+        metrics.latency.record(elapsedNanos / 1_000);
+        metrics.timeout.increment();
+    }
+
+    public void processorBusy(final String processor) {
+        processor(processor).busy.increment();
+    }
+
+    public void processorError(final String processor) {
+        processor(processor).error.increment();
+    }
+
+    private ProcessorMetrics processor(final String processor) {
+        return "default".equals(processor) ? defaultProcessor : fallbackProcessor;
+    }
+
+    /** Prometheus text exposition format. */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "payments_ingress_total", "counter", "POST /payments requests by outcome");
+        sample(out, "payments_ingress_total", "outcome=\"accepted\"", ingressAccepted.sum());
+        sample(out, "payments_ingress_total", "outcome=\"rejected\"", ingressRejected.sum());
+        sample(out, "payments_ingress_total", "outcome=\"duplicate\"", ingressDuplicate.sum());
+        sample(out, "payments_ingress_total", "outcome=\"malformed\"", ingressMalformed.sum());
+
+        header(out, "payments_producer_flush_seconds", "summary", "Duration of one pipelined XADD batch");
+        seconds(out, "payments_producer_flush_seconds", "", producerFlush);
+        header(out, "payments_producer_batch_size", "summary", "XADDs per pipelined batch");
+        plain(out, "payments_producer_batch_size", "", producerBatchSize);
+        header(out, "payments_consumer_batch_size", "summary", "Entries returned per XREADGROUP");
+        plain(out, "payments_consumer_batch_size", "", consumerBatchSize);
+        header(out, "payments_stream_pending", "gauge", "Entries delivered to the consumer group but not acknowledged");
+        sample(out, "payments_stream_pending", "", streamPending.get());
+        header(out, "payments_stream_length", "gauge", "Entries in payments_stream");
+        sample(out, "payments_stream_length", "", streamLength.get());
+        header(out, "payments_stream_memory_bytes", "gauge", "MEMORY USAGE of payments_stream");
+        sample(out, "payments_stream_memory_bytes", "", streamMemory.get());
+        header(out, "payments_stream_trimmed_total", "counter", "Acknowledged entries removed from payments_stream");
+        sample(out, "payments_stream_trimmed_total", "", streamTrimmed.sum());
+        header(out, "payments_stream_reclaimed_bytes_total", "counter", "Stream memory freed by trimming");
+        sample(out, "payments_stream_reclaimed_bytes_total", "", streamReclaimedBytes.sum());
+        header(out, "payments_stream_reclaimed_total", "counter", "Stale pending entries taken over with XAUTOCLAIM");
+        sample(out, "payments_stream_reclaimed_total", "", streamReclaimed.sum());
+        header(out, "payments_stream_dead_lettered_total", "counter", "Stream entries that did not parse, moved to payments_stream:dead");
+        sample(out, "payments_stream_dead_lettered_total", "", streamDeadLettered.sum());
+
+        header(out, "payments_processor_seconds", "summary", "Processor call latency");
+        for (ProcessorMetrics metrics : new ProcessorMetrics[]{defaultProcessor, fallbackProcessor}) {
+            seconds(out, "payments_processor_seconds", metrics.label, metrics.latency);
+        }
+        header(out, "payments_processor_calls_total", "counter", "Processor calls by outcome");
+        for (ProcessorMetrics metrics : new ProcessorMetrics[]{defaultProcessor, fallbackProcessor}) {
+            outcome(out, metrics, "success", metrics.success);
+            outcome(out, metrics, "client_error", metrics.clientError);
+            outcome(out, metrics, "server_error", metrics.serverError);
+            outcome(out, metrics, "timeout", metrics.timeout);
+            outcome(out, metrics, "busy", metrics.busy);
+            outcome(out, metrics, "error", metrics.error);
+        }
+
+        header(out, "payments_summary_seconds", "summary", "Time to compute a payments summary");
+        seconds(out, "payments_summary_seconds", "", summary);
+        return out.toString();
+    }
+
+    private static void header(final StringBuilder out, final String name, final String type, final String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void outcome(final StringBuilder out, final ProcessorMetrics metrics, final String outcome, final LongAdder value) {
+        sample(out, "payments_processor_calls_total", metrics.label + ",outcome=\"" + outcome + "\"", value.sum());
+    }
+
+    private static void seconds(final StringBuilder out, final String name, final String labels, final Histogram histogram) {
+        for (double quantile : QUANTILES) {
+            sample(out, name, join(labels, "quantile=\"" + quantile + "\""), histogram.quantile(quantile) / 1e6);
+        }
+        sample(out, name + "_max", labels, histogram.max() / 1e6);
+        sample(out, name + "_sum", labels, histogram.sum() / 1e6);
+        sample(out, name + "_count", labels, histogram.count());
+    }
+
+    private static void plain(final StringBuilder out, final String name, final String labels, final Histogram histogram) {
+        for (double quantile : QUANTILES) {
+            sample(out, name, join(labels, "quantile=\"" + quantile + "\""), histogram.quantile(quantile));
+        }
+        sample(out, name + "_max", labels, histogram.max());
+        sample(out, name + "_sum", labels, histogram.sum());
+        sample(out, name + "_count", labels, histogram.count());
+    }
+
+    private static String join(final String labels, final String label) {
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+
+    private static void sample(final StringBuilder out, final String name, final String labels, final double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static final class ProcessorMetrics {
+        private final String label;
+        private final Histogram latency = new Histogram();
+        private final LongAdder success = new LongAdder();
+        private final LongAdder clientError = new LongAdder();
+        private final LongAdder serverError = new LongAdder();
+        private final LongAdder timeout = new LongAdder();
+        private final LongAdder busy = new LongAdder();
+        private final LongAdder error = new LongAdder();
+
+        private ProcessorMetrics(final String processor) {
+            this.label = "processor=\"" + processor + "\"";
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.andrelucas.payments;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts travel through the pipeline as a {@code long} number of cents.
+ */
+public final class Cents {
+
+    private Cents() {
+    }
+
+    public static long of(final BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Parses a plain decimal amount such as {@code 19.9} or {@code 19.90}; digits past the second
+     * decimal place are dropped.
+     */
+    public static long parse(final CharSequence amount) {
+        int length = amount.length();
+        int i = 0;
+        long units = 0;
+        for (; i < length && amount.charAt(i) != '.'; i++) {
+            units = units * 10 + digit(amount, i);
+        }
+        if (i == 0) {
+            throw new NumberFormatException("Invalid amount: " + amount);
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        for (i++; i < length; i++) {
+            int digit = digit(amount, i);
+            if (fractionDigits < 2) {
+                fraction = fraction * 10 + digit;
+                fractionDigits++;
+            }
+        }
+        for (; fractionDigits < 2; fractionDigits++) {
+            fraction *= 10;
+        }
+        return Math.addExact(Math.multiplyExact(units, 100), fraction);
+    }
+
+    public static BigDecimal toAmount(final long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /** The same text as {@code toAmount(cents).toPlainString()} for non-negative amounts. */
+    public static String format(final long cents) {
+        int fraction = (int) (cents % 100);
+        return (cents / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static int digit(final CharSequence amount, final int index) {
+        char c = amount.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid amount: " + amount);
+        }
+        return c - '0';
+    }
+}
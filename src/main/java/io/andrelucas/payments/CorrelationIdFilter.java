@@ -0,0 +1,49 @@
+package io.andrelucas.payments;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over correlationIds. The UUID bits are already random, so its two halves,
+ * mixed once, serve as the two base hashes of double hashing. Never forgets and never misses an id
+ * it was given; a "maybe" may be a false positive.
+ */
+final class CorrelationIdFilter {
+
+    private final AtomicLongArray words;
+    private final long mask;
+    private final int hashes;
+
+    CorrelationIdFilter(final int bits, final int hashes) {
+        int size = Integer.highestOneBit(Math.max(Long.SIZE, bits));
+        this.words = new AtomicLongArray(size / Long.SIZE);
+        this.mask = size - 1;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Adds the id and tells whether it was definitely not there before.
+     */
+    boolean add(final UUID correlationId) {
+        long h1 = mix(correlationId.getMostSignificantBits());
+        long h2 = mix(correlationId.getLeastSignificantBits()) | 1;
+
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            long bitMask = 1L << bit;
+            long previous = words.getAndAccumulate((int) (bit >>> 6), bitMask, (word, m) -> word | m);
+            if ((previous & bitMask) == 0) {
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
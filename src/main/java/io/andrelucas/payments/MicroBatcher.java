@@ -0,0 +1,83 @@
+package io.andrelucas.payments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Collects items offered from any thread and hands them to {@code flush} in batches of up to
+ * {@code batchSize}, from a single flushing thread. A batch goes out once full or one flush window
+ * after its first item arrived; with nothing pending, the flushing thread stays parked until the
+ * next offer. At most {@code capacity} items wait at a time; offers beyond that are refused.
+ */
+final class MicroBatcher<E> {
+    private final int batchSize;
+    private final int capacity;
+    private final long flushWindowInNanos;
+    private final Consumer<List<E>> flush;
+
+    private final ConcurrentLinkedQueue<E> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile Thread flusher;
+
+    MicroBatcher(final int batchSize, final int capacity, final long flushWindowInNanos, final Consumer<List<E>> flush) {
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flushWindowInNanos = flushWindowInNanos;
+        this.flush = flush;
+    }
+
+    void start(final Executor executor) {
+        executor.execute(this::flushLoop);
+    }
+
+    /** @return {@code false} when {@code capacity} items are already waiting */
+    boolean offer(final E item) {
+        int count = pendingCount.incrementAndGet();
+        if (count > capacity) {
+            pendingCount.decrementAndGet();
+            return false;
+        }
+        // counted before it is queued: a drain that misses it leaves it for the next window
+        pending.offer(item);
+        if (count == 1 || count >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return true;
+    }
+
+    private void flushLoop() {
+        flusher = Thread.currentThread();
+        while (!Thread.currentThread().isInterrupted()) {
+            int count = pendingCount.get();
+            if (count == 0) {
+                // the first item unparks us; one arriving before the park leaves a permit behind
+                LockSupport.park(this);
+                continue;
+            }
+            if (count < batchSize) {
+                LockSupport.parkNanos(flushWindowInNanos);
+            }
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (pendingCount.get() > 0) {
+            List<E> batch = new ArrayList<>(Math.min(pendingCount.get(), batchSize));
+            E item;
+            while (batch.size() < batchSize && (item = pending.poll()) != null) {
+                batch.add(item);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingCount.addAndGet(-batch.size());
+            flush.accept(batch);
+        }
+    }
+}
@@ -1,133 +1,204 @@
 package io.andrelucas.payments;
 
-import io.quarkus.virtual.threads.VirtualThreads;
-import io.vertx.mutiny.redis.client.RedisAPI;
+import io.andrelucas.metrics.PipelineMetrics;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.math.BigDecimal;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends a payment to the routed processor and falls back to the other one when it is refused.
+ * Each call goes through that processor's {@link ProcessorLimiter}. When the routed processor is
+ * saturated or its breaker is open, {@code app.limiter-overflow} decides between sending to the
+ * other processor ({@code fallback}) or waiting for a free slot ({@code wait}), up to the hold deadline.
+ * A 4xx answer is final: the payment is not sent to the other processor, and the answer does not
+ * count against the processor's health. A 422 says the processor already has the correlationId,
+ * typically from an earlier call that timed out here but went through there, so the payment is
+ * recorded as accepted by that processor; recording is idempotent, so it is never counted twice.
+ */
 @ApplicationScoped
 public class PaymentClient {
     private static final Logger log = LoggerFactory.getLogger(PaymentClient.class);
-    private final HttpClient httpClient;
-
-    private final String defaultBaseUri;
-    private final String fallbackBaseUri;
-    private final RedisAPI redisAPI;
-    private final Executor executor;
-
-    public PaymentClient(@ConfigProperty(name = "payment-processor.default.base-url") final String defaultBaseUri,
-                         @ConfigProperty(name = "payment-processor.fallback.base-url") final String fallbackBaseUri,
-                         final RedisAPI redisAPI,
-                         @VirtualThreads final Executor executor) {
-
-        this.defaultBaseUri = defaultBaseUri;
-        this.fallbackBaseUri = fallbackBaseUri;
-        this.redisAPI = redisAPI;
-        this.executor = executor;
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .executor(executor)
-                .build();
+    private static final int ALREADY_EXISTS = 422;
+    static final String OVERFLOW_TO_FALLBACK = "fallback";
+    static final String OVERFLOW_WAIT = "wait";
+
+    private final ProcessorTransport transport;
+    private final PaymentRecorder paymentRecorder;
+    private final ProcessorRouter router;
+    private final ProcessorLimiters limiters;
+    private final PipelineMetrics metrics;
+    private final Executor holdExecutor;
+    private final Executor limiterWaitExecutor;
+    private final boolean overflowToFallback;
+    private final long maxHoldInMs;
+
+    public PaymentClient(@ConfigProperty(name = "app.router-hold-in-ms") final long holdInMs,
+                         @ConfigProperty(name = "app.router-max-hold-in-ms") final long maxHoldInMs,
+                         @ConfigProperty(name = "app.limiter-overflow") final String overflow,
+                         @ConfigProperty(name = "app.limiter-wait-in-ms") final long limiterWaitInMs,
+                         final ProcessorTransport transport,
+                         final PaymentRecorder paymentRecorder,
+                         final ProcessorRouter router,
+                         final ProcessorLimiters limiters,
+                         final PipelineMetrics metrics) {
+
+        this.transport = transport;
+        this.paymentRecorder = paymentRecorder;
+        this.router = router;
+        this.limiters = limiters;
+        this.metrics = metrics;
+        this.holdExecutor = CompletableFuture.delayedExecutor(holdInMs, TimeUnit.MILLISECONDS);
+        this.limiterWaitExecutor = CompletableFuture.delayedExecutor(limiterWaitInMs, TimeUnit.MILLISECONDS);
+        this.overflowToFallback = OVERFLOW_TO_FALLBACK.equals(overflow);
+        this.maxHoldInMs = maxHoldInMs;
     }
 
-    public void processPayment(final PaymentClientRequest paymentRequest) {
-        CompletableFuture.runAsync(() -> {
-            try{
-                sendDefault(paymentRequest);
-            } catch (Exception e) {
-                log.error("Got an error at send payment", e);
-                try {
-                    sendFallback(paymentRequest);
-                } catch (Exception fallbackEx) {
-                    log.error("Got an error at send payment to fallback", fallbackEx);
-                }
-            }
-        },  executor);
+    public enum Outcome {
+        /** Accepted by a processor and recorded. */
+        RECORDED,
+        /** Refused with a 4xx, which sending it again would not change. */
+        REJECTED,
+        /** Neither processor took it this time. */
+        UNPROCESSED
     }
 
-    private String toJson(final PaymentClientRequest paymentRequest) {
-        return "{" +
-                "\"correlationId\":\"" + paymentRequest.correlationId() + "\"," +
-                "\"amount\":" + paymentRequest.amount().toString() + "," +
-                "\"requestedAt\":\"" + DateTimeFormatter.ISO_INSTANT.format(paymentRequest.requestedAt()) + "\"" +
-                "}";
+    private enum Answer { ACCEPTED, REJECTED, FAILED }
+
+    private record Sent(Processor processor, Answer answer) {
+        static final Sent NONE = new Sent(null, Answer.FAILED);
     }
 
-    private String toData(final PaymentClientRequest paymentRequest, final String processorType) {
-        return "{" +
-                "\"correlationId\":\"" + paymentRequest.correlationId() + "\"," +
-                "\"amount\":" + paymentRequest.amount().toString() + "," +
-                "\"processor\":\"" + processorType + "\"," +
-                "\"requestedAt\":\"" + DateTimeFormatter.ISO_INSTANT.format(paymentRequest.requestedAt()) + "\"" +
-                "}";
+    public CompletableFuture<Outcome> processPayment(final PaymentClientRequest paymentRequest) {
+        PaymentPayloadEncoder.Payload payload = PaymentPayloadEncoder.encode(paymentRequest);
+        long deadline = System.currentTimeMillis() + maxHoldInMs;
+
+        return awaitRoute(deadline)
+                .thenCompose(route -> attempt(route, payload, deadline))
+                .thenCompose(sent -> switch (sent.answer()) {
+                    case ACCEPTED -> paymentRecorder.record(sent.processor(), paymentRequest,
+                                    payload.timelineMember(sent.processor(), paymentRequest.amountInCents()))
+                            .thenApply(v -> Outcome.RECORDED);
+                    case REJECTED -> CompletableFuture.completedFuture(Outcome.REJECTED);
+                    case FAILED -> CompletableFuture.completedFuture(Outcome.UNPROCESSED);
+                })
+                .whenComplete((outcome, err) -> PaymentPayloadEncoder.release(payload));
     }
 
+    private CompletableFuture<ProcessorRouter.Route> awaitRoute(final long deadline) {
+        ProcessorRouter.Route route = router.route();
+        if (route != ProcessorRouter.Route.HOLD || System.currentTimeMillis() >= deadline) {
+            return CompletableFuture.completedFuture(route);
+        }
+        return CompletableFuture.runAsync(() -> {}, holdExecutor)
+                .thenCompose(v -> awaitRoute(deadline));
+    }
 
-    private void sendDefault(final PaymentClientRequest paymentRequest) throws IOException, InterruptedException {
-        String payload = toJson(paymentRequest);
-        log.debug("Sending payment to default {}", payload);
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(defaultBaseUri + "/payments"))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(5)) // Add request timeout
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
-
-        HttpResponse<String> httpResponse = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (httpResponse.statusCode() == 200) {
-            String data = toData(paymentRequest, "default");
-            redisAPI.zadd(List.of("payments:timeline", String.valueOf(paymentRequest.requestedAt().toEpochMilli()), data))
-                    .onFailure()
-                    .invoke(e -> log.error("Got an error at to save payment", e))
-                    .subscribe()
-                    .with( r -> log.debug(r.toString()));
-        } else {
-            log.error("Got an error at to send payment status code: {}, body: {}", httpResponse.statusCode(), httpResponse.body());
-            throw new RuntimeException("Got an error at to send payment");
+    /** Completes with the processor that answered last and its answer, or {@link Sent#NONE}. */
+    private CompletableFuture<Sent> attempt(final ProcessorRouter.Route route,
+                                                 final PaymentPayloadEncoder.Payload payload,
+                                                 final long deadline) {
+        Processor primary = route == ProcessorRouter.Route.FALLBACK ? Processor.FALLBACK : Processor.DEFAULT;
+        Processor secondary = primary == Processor.DEFAULT ? Processor.FALLBACK : Processor.DEFAULT;
+
+        if (limiters.of(primary).tryAcquire(System.nanoTime())) {
+            return send(primary, payload)
+                    .thenCompose(answer -> {
+                        if (answer != Answer.FAILED) {
+                            return CompletableFuture.completedFuture(new Sent(primary, answer));
+                        }
+                        if (!limiters.of(secondary).tryAcquire(System.nanoTime())) {
+                            return CompletableFuture.completedFuture(Sent.NONE);
+                        }
+                        return send(secondary, payload).thenApply(fallbackAnswer -> new Sent(secondary, fallbackAnswer));
+                    });
         }
 
+        if (overflowToFallback && limiters.of(secondary).tryAcquire(System.nanoTime())) {
+            return send(secondary, payload).thenApply(answer -> new Sent(secondary, answer));
+        }
+        if (System.currentTimeMillis() >= deadline) {
+            return CompletableFuture.completedFuture(Sent.NONE);
+        }
+        return CompletableFuture.runAsync(() -> {}, limiterWaitExecutor)
+                .thenCompose(v -> awaitRoute(deadline))
+                .thenCompose(nextRoute -> attempt(nextRoute, payload, deadline));
     }
 
-    private void sendFallback(final PaymentClientRequest paymentRequest) throws IOException, InterruptedException {
-        String payload = toJson(paymentRequest);
-        log.info("Sending payment to fallback {}", payload);
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(fallbackBaseUri + "/payments"))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(5)) // Add request timeout
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
-
-        HttpResponse<String> httpResponse = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (httpResponse.statusCode() == 200) {
-            String data = toData(paymentRequest, "fallback");
-            redisAPI.zadd(List.of("payments:timeline", String.valueOf(paymentRequest.requestedAt().toEpochMilli()), data))
-                    .onFailure()
-                    .invoke(e -> log.error("Got an error at to save payment", e))
-                    .subscribe()
-                    .with( r -> log.debug(r.toString()));
-        }  else {
-            log.error("Got an error at to send payment status code: {}, body: {}", httpResponse.statusCode(), httpResponse.body());
-            throw new RuntimeException("Got an error at to send payment");
+    /** Expects a permit of the processor's limiter and gives it back. */
+    private CompletableFuture<Answer> send(final Processor processor, final PaymentPayloadEncoder.Payload payload) {
+        log.debug("Sending payment to {} {}", processor.key(), payload);
+
+        ProcessorLimiter limiter = limiters.of(processor);
+        long start = System.nanoTime();
+        return transport.postPayment(processor, payload.processorBody())
+                .handle((reply, err) -> {
+                    if (err != null) {
+                        Throwable cause = err instanceof CompletionException ? err.getCause() : err;
+                        // a full local queue says nothing about the processor itself
+                        if (cause instanceof ConnectionPoolTooBusyException) {
+                            limiter.onIgnored();
+                            metrics.processorBusy(processor.key());
+                        } else {
+                            limiter.onFailure(System.nanoTime());
+                            router.record(processor, elapsedInMs(start), false);
+                            if (cause instanceof TimeoutException) {
+                                metrics.processorTimeout(processor.key(), System.nanoTime() - start);
+                            } else {
+                                metrics.processorError(processor.key());
+                            }
+                        }
+                        log.error("Got an error at send payment to {}: {}", processor.key(), cause.getMessage());
+                        return Answer.FAILED;
+                    }
+
+                    int statusCode = reply.statusCode();
+                    // a 4xx is about the payment, not the processor, like ProcessorLimiter counts it
+                    boolean healthy = statusCode < 500;
+                    if (healthy) {
+                        long now = System.nanoTime();
+                        limiter.onSuccess(now - start, now);
+                    } else {
+                        limiter.onFailure(System.nanoTime());
+                    }
+                    router.record(processor, elapsedInMs(start), healthy);
+                    metrics.processorResponse(processor.key(), statusCode, System.nanoTime() - start);
+                    if (statusCode == 200) {
+                        return Answer.ACCEPTED;
+                    }
+                    if (statusCode == ALREADY_EXISTS) {
+                        log.debug("Payment already accepted by {}: {}", processor.key(), reply.body());
+                        return Answer.ACCEPTED;
+                    }
+                    if (statusCode >= 400 && statusCode < 500) {
+                        log.warn("Payment rejected by {} with status code: {}, body: {}", processor.key(), statusCode, reply.body());
+                        return Answer.REJECTED;
+                    }
+                    log.error("Got an error at to send payment status code: {}, body: {}", statusCode, reply.body());
+                    return Answer.FAILED;
+                });
+    }
+
+    private static long elapsedInMs(final long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @param entryId the stream entry the payment came from, acknowledged when it is recorded;
+     *                {@code null} when there is none
+     */
+    public record PaymentClientRequest(String correlationId, long amountInCents, long requestedAt, String entryId) {
+
+        public PaymentClientRequest(final String correlationId, final long amountInCents, final long requestedAt) {
+            this(correlationId, amountInCents, requestedAt, null);
         }
     }
-    public record PaymentClientRequest(String correlationId, BigDecimal amount, Instant requestedAt) {}
 
 }
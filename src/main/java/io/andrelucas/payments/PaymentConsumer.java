@@ -1,5 +1,7 @@
 package io.andrelucas.payments;
 
+import io.andrelucas.RedisInitializer;
+import io.andrelucas.metrics.PipelineMetrics;
 import io.quarkus.runtime.Startup;
 import io.quarkus.virtual.threads.VirtualThreads;
 import io.vertx.mutiny.redis.client.RedisAPI;
@@ -10,122 +12,316 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Consuming side of the Redis Streams engine. Staged pipeline: read with XREADGROUP, dispatch
+ * under the {@link PaymentDispatcher} permits, then record. Recorded entries are acknowledged by
+ * the {@link PaymentRecorder} in the same script call that records them. Reading waits while every
+ * permit is taken, so the processors set the pace. Payments refused by both processors are handed to
+ * the {@link PaymentRetryQueue}, and payments rejected with a 4xx other than 422 are dropped; both are then
+ * acknowledged here with one batched XACK. Entries that could not even be scheduled stay pending in the group.
+ * COUNT and BLOCK of each read are picked by a {@link ReadSizer}.
+ * <p>
+ * Entries left pending by a consumer that died, including this node before a restart, are moved here
+ * with XAUTOCLAIM once idle for {@code app.reclaim-min-idle-in-ms}, at most {@code app.reclaim-count}
+ * every {@code app.reclaim-interval-in-ms} and under the same permits, then go through the normal path.
+ * <p>
+ * Entries that cannot be parsed are copied to {@value #DEAD_LETTER_KEY} and acknowledged, so one bad
+ * entry neither holds back the rest of its batch nor comes back with every reclaim.
+ */
 @Startup
 @ApplicationScoped
 public class PaymentConsumer {
     private static final Logger log = LoggerFactory.getLogger(PaymentConsumer.class);
+    private static final long PENDING_REFRESH_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final String DEAD_LETTER_KEY = "payments_stream:dead";
     private final String consumerName;
     private final RedisAPI redisAPI;
-    private final PaymentClient paymentClient;
+    private final PaymentDispatcher dispatcher;
+    private final RedisInitializer redisInitializer;
+    private final PipelineMetrics metrics;
     private final Executor executor;
+    private final boolean enabled;
 
-    private final String redisBlock;
-    private final String redisCount;
+    private final ReadSizer readSizer;
     private final Integer redisDelay;
+    private final long ackIntervalInNanos;
+    private final long reclaimIntervalInMs;
+    private final long reclaimMinIdleInMs;
+    private final int reclaimCount;
 
+    private final ConcurrentLinkedQueue<String> acks = new ConcurrentLinkedQueue<>();
 
 
     public PaymentConsumer(@ConfigProperty(name="app.consumer-name") final String consumerName,
                            final RedisAPI redisAPI,
-                           final PaymentClient paymentClient,
+                           @ConfigProperty(name="app.queue-engine") final String queueEngine,
+                           final PaymentDispatcher dispatcher,
+                           final RedisInitializer redisInitializer,
+                           final PipelineMetrics metrics,
                            @VirtualThreads final Executor executor,
-                           @ConfigProperty(name="app.consumer-block") String redisBlock,
-                           @ConfigProperty(name="app.consumer-count") String redisCount,
-                           @ConfigProperty(name="app.consumer-delay-in-ms") Integer redisDelay) {
+                           @ConfigProperty(name="app.consumer-min-block-in-ms") long minBlockInMs,
+                           @ConfigProperty(name="app.consumer-block") long maxBlockInMs,
+                           @ConfigProperty(name="app.consumer-min-count") int minCount,
+                           @ConfigProperty(name="app.consumer-count") int maxCount,
+                           @ConfigProperty(name="app.consumer-batch-window-in-ms") long batchWindowInMs,
+                           @ConfigProperty(name="app.consumer-delay-in-ms") Integer redisDelay,
+                           @ConfigProperty(name="app.consumer-ack-interval-in-ms") long ackIntervalInMs,
+                           @ConfigProperty(name="app.reclaim-interval-in-ms") long reclaimIntervalInMs,
+                           @ConfigProperty(name="app.reclaim-min-idle-in-ms") long reclaimMinIdleInMs,
+                           @ConfigProperty(name="app.reclaim-count") int reclaimCount) {
 
         this.consumerName = consumerName;
         this.redisAPI = redisAPI;
-        this.paymentClient = paymentClient;
+        this.dispatcher = dispatcher;
+        this.redisInitializer = redisInitializer;
+        this.metrics = metrics;
+        this.enabled = PaymentQueue.REDIS_ENGINE.equals(queueEngine);
         this.executor = executor;
-        this.redisBlock = redisBlock;
-        this.redisCount = redisCount;
+        this.readSizer = new ReadSizer(minCount, maxCount, minBlockInMs, maxBlockInMs, batchWindowInMs, System.nanoTime());
         this.redisDelay = redisDelay;
+        this.ackIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(ackIntervalInMs);
+        this.reclaimIntervalInMs = reclaimIntervalInMs;
+        this.reclaimMinIdleInMs = reclaimMinIdleInMs;
+        this.reclaimCount = reclaimCount;
     }
 
     @PostConstruct
-    void init() throws InterruptedException {
-        Thread.sleep(1000);
-        executor.execute(this::consumer);
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        redisInitializer.ready().thenRun(() -> {
+            executor.execute(this::consumer);
+            executor.execute(this::ackLoop);
+            executor.execute(this::reclaimLoop);
+        });
     }
 
 
     private void consumer(){
-        List<String> args = List.of(
-                "GROUP", "payments_group",
-                consumerName,
-                "BLOCK", redisBlock,
-                "COUNT", redisCount,
-                "STREAMS", "payments_stream",
-                ">"
-                );
-
-        redisAPI.xreadgroup(args)
-                .map(PaymentEvent::from)
+        while (!Thread.currentThread().isInterrupted()) {
+            int count = 0;
+            try {
+                count = dispatcher.acquire(readSizer.count());
+                List<PaymentEvent.Malformed> malformed = new ArrayList<>();
+                List<PaymentEvent> events = PaymentEvent.from(redisAPI.xreadgroupAndAwait(List.of(
+                        "GROUP", "payments_group",
+                        consumerName,
+                        "BLOCK", String.valueOf(readSizer.blockInMs()),
+                        "COUNT", String.valueOf(count),
+                        "STREAMS", "payments_stream",
+                        ">"
+                )), malformed);
+                deadLetter(malformed);
+
+                dispatcher.release(count - events.size());
+                readSizer.onRead(count, events.size(), System.nanoTime());
+                count = 0;
+                metrics.consumerBatch(events.size());
+                events.forEach(this::dispatch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception err) {
+                dispatcher.release(count);
+                log.error("Error reading group", err);
+                pause();
+            }
+        }
+    }
+
+    private void reclaimLoop() {
+        String cursor = "0-0";
+        while (!Thread.currentThread().isInterrupted()) {
+            int count = 0;
+            try {
+                Thread.sleep(reclaimIntervalInMs);
+                count = dispatcher.acquire(reclaimCount);
+                Response claimed = redisAPI.xautoclaimAndAwait(List.of(
+                        "payments_stream", "payments_group",
+                        consumerName,
+                        String.valueOf(reclaimMinIdleInMs),
+                        cursor,
+                        "COUNT", String.valueOf(count)
+                ));
+                cursor = claimed.get(0).toString();
+
+                List<PaymentEvent> events = new ArrayList<>();
+                List<PaymentEvent.Malformed> malformed = new ArrayList<>();
+                PaymentEvent.collect(claimed.get(1), events, acks, malformed);
+                deadLetter(malformed);
+                if (claimed.size() > 2) {
+                    // entries deleted from the stream while pending: nothing left to process
+                    claimed.get(2).forEach(id -> acks.offer(id.toString()));
+                }
+                dispatcher.release(count - events.size());
+                count = 0;
+                if (!events.isEmpty()) {
+                    metrics.streamReclaimed(events.size());
+                    log.info("Reclaimed {} stale stream entries", events.size());
+                    events.forEach(this::dispatch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception err) {
+                dispatcher.release(count);
+                log.error("Error reclaiming pending entries", err);
+            }
+        }
+    }
+
+    private void dispatch(final PaymentEvent event) {
+        PaymentClient.PaymentClientRequest request = new PaymentClient.PaymentClientRequest(event.correlationId(), event.amountInCents(), event.requestedAt(), event.id());
+        dispatcher.dispatch(request, 0)
+                .whenComplete((recorded, err) -> {
+                    readSizer.completed();
+                    if (err == null) {
+                        if (!recorded) {
+                            acks.offer(event.id());
+                        }
+                    } else {
+                        log.warn("Payment {} left pending on stream entry {}", event.correlationId(), event.id());
+                    }
+                });
+    }
+
+    private void deadLetter(final List<PaymentEvent.Malformed> malformed) {
+        if (malformed.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(malformed.size() + 1);
+        args.add(DEAD_LETTER_KEY);
+        malformed.forEach(entry -> args.add(entry.id() + " " + entry.fields()));
+        metrics.streamDeadLettered(malformed.size());
+        redisAPI.rpush(args)
+                .subscribe()
+                .with(length -> {
+                    log.warn("Moved {} malformed stream entries to {}", malformed.size(), DEAD_LETTER_KEY);
+                    malformed.forEach(entry -> acks.offer(entry.id()));
+                }, e -> log.error("Error dead-lettering {} malformed stream entries", malformed.size(), e));
+    }
+
+    private void ackLoop() {
+        long lastPendingRefresh = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(ackIntervalInNanos);
+            ack();
+            if (System.nanoTime() - lastPendingRefresh >= PENDING_REFRESH_INTERVAL_IN_NANOS) {
+                lastPendingRefresh = System.nanoTime();
+                refreshPending();
+            }
+        }
+    }
+
+    private void refreshPending() {
+        redisAPI.xinfo(List.of("GROUPS", "payments_stream"))
+                .subscribe()
+                .with(groups -> {
+                    for (Response group : groups) {
+                        if ("payments_group".equals(String.valueOf(StreamInfo.field(group, "name")))) {
+                            metrics.streamPending(StreamInfo.toLong(StreamInfo.field(group, "pending")));
+                            readSizer.backlog(StreamInfo.toLong(StreamInfo.field(group, "lag")));
+                        }
+                    }
+                }, e -> log.warn("Error reading consumer group info: {}", e.getMessage()));
+    }
+
+    private void ack() {
+        List<String> args = new ArrayList<>();
+        args.add("payments_stream");
+        args.add("payments_group");
+        String id;
+        while ((id = acks.poll()) != null) {
+            args.add(id);
+        }
+        if (args.size() == 2) {
+            return;
+        }
+
+        redisAPI.xack(args)
                 .onFailure()
-                .invoke(err -> log.error("Error reading group", err))
-                .repeat()
-                .withDelay(Duration.ofMillis(redisDelay))
-                .indefinitely()
+                .invoke(e -> log.error("Error acknowledging {} stream entries", args.size() - 2, e))
                 .subscribe()
-                .with(response -> {
-                    response.forEach(event -> {
-                        PaymentClient.PaymentClientRequest request = new PaymentClient.PaymentClientRequest(event.correlationId(), event.amount(), event.requestedAt());
-                        paymentClient.processPayment(request);
-                        ack(response);
-                    });
-                });
+                .with(acked -> log.debug("Acknowledged {} stream entries", acked));
     }
 
-    private void ack(List<PaymentEvent> events) {
-       events.forEach(event -> {
-           redisAPI.xackAndForget(List.of(
-                   "payments_stream",
-                   "payments_group",
-                   event.id()
-           ));
-       });
+    private void pause() {
+        try {
+            Thread.sleep(redisDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    public record PaymentEvent(String id, String correlationId, BigDecimal amount, Instant requestedAt) {
+    public record PaymentEvent(String id, String correlationId, long amountInCents, long requestedAt) {
 
-        public static List<PaymentEvent> from(Response response) {
+        public static List<PaymentEvent> from(Response response, List<Malformed> malformed) {
             var events = new java.util.ArrayList<PaymentEvent>();
             if (response != null){
                 for (Response stream : response) {
-                    Response messages = stream.get(1);
-
-                    for (Response msg : messages) {
-                        String id = msg.get(0).toString();
-                        Response fields = msg.get(1);
-
-                        String correlationId = null;
-                        BigDecimal amount = null;
-                        Instant requestedAt = null;
-
-                        for (int i = 0; i < fields.size(); i += 2) {
-                            String key = fields.get(i).toString();
-                            String value = fields.get(i + 1).toString();
-                            switch (key) {
-                                case "correlationId" -> correlationId = value;
-                                case "amount" -> amount = new BigDecimal(value);
-                                case "requestedAt" -> requestedAt = Instant.ofEpochMilli(Long.parseLong(value));
-                            }
-                        }
-
-                        events.add(new PaymentEvent(id, correlationId, amount, requestedAt));
-                    }
+                    collect(stream.get(1), events, null, malformed);
                 }
             }
 
 
             return events;
         }
+
+        /**
+         * Parses stream entries into {@code events}; entries whose body is gone (Redis 6.2 claims of
+         * deleted entries) have their ids added to {@code gone} when given, and entries that do not
+         * parse go to {@code malformed}.
+         */
+        static void collect(final Response messages, final List<PaymentEvent> events, final Queue<String> gone,
+                            final List<Malformed> malformed) {
+            for (Response msg : messages) {
+                if (msg == null) {
+                    continue;
+                }
+                String id = msg.get(0).toString();
+                Response fields = msg.get(1);
+                if (fields == null) {
+                    if (gone != null) {
+                        gone.offer(id);
+                    }
+                    continue;
+                }
+
+                String correlationId = null;
+                long amountInCents = 0;
+                long requestedAt = 0;
+
+                try {
+                    for (int i = 0; i < fields.size(); i += 2) {
+                        String key = fields.get(i).toString();
+                        String value = fields.get(i + 1).toString();
+                        switch (key) {
+                            case "correlationId" -> correlationId = value;
+                            case "amount" -> amountInCents = Cents.parse(value);
+                            case "requestedAt" -> requestedAt = Long.parseLong(value);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    correlationId = null;
+                }
+
+                if (correlationId == null) {
+                    malformed.add(new Malformed(id, fields.toString()));
+                    continue;
+                }
+                events.add(new PaymentEvent(id, correlationId, amountInCents, requestedAt));
+            }
+        }
+
+        /** A stream entry that could not be parsed, with its fields as Redis returned them. */
+        record Malformed(String id, String fields) {}
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package io.andrelucas.payments;
+
+import io.vertx.mutiny.redis.client.RedisAPI;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Keeps a correlationId from being processed twice.
+ * <p>
+ * Ingress goes through {@link #admit}: ids this node's {@link CorrelationIdFilter} has never seen are
+ * let through without touching Redis, and only a "maybe seen" costs an EXISTS on the id's marker key.
+ * The marker itself, {@code payments:seen:<id>}, is claimed atomically (SET NX) by whichever engine
+ * takes the payment - inside the XADD script for Redis Streams, through {@link #claim} for the ring
+ * buffer - so duplicates arriving at different nodes, or racing each other, are collapsed there.
+ */
+@ApplicationScoped
+public class PaymentDeduplicator {
+    private static final Logger log = LoggerFactory.getLogger(PaymentDeduplicator.class);
+    private static final String SEEN_KEY_PREFIX = "payments:seen:";
+    private static final CompletionStage<Boolean> ADMITTED = CompletableFuture.completedStage(true);
+
+    private final RedisAPI redisAPI;
+    private final CorrelationIdFilter filter;
+    private final long ttlInMs;
+
+    public PaymentDeduplicator(final RedisAPI redisAPI,
+                               @ConfigProperty(name = "app.dedup-filter-bits") final int filterBits,
+                               @ConfigProperty(name = "app.dedup-filter-hashes") final int filterHashes,
+                               @ConfigProperty(name = "app.dedup-ttl-in-ms") final long ttlInMs) {
+        this.redisAPI = redisAPI;
+        this.filter = new CorrelationIdFilter(filterBits, filterHashes);
+        this.ttlInMs = ttlInMs;
+    }
+
+    static String seenKey(final String correlationId) {
+        return SEEN_KEY_PREFIX + correlationId;
+    }
+
+    long ttlInMs() {
+        return ttlInMs;
+    }
+
+    /**
+     * Completes with {@code false} when the id was already taken and the payment should be dropped.
+     */
+    public CompletionStage<Boolean> admit(final UUID correlationId) {
+        if (filter.add(correlationId)) {
+            return ADMITTED;
+        }
+        return redisAPI.exists(List.of(seenKey(correlationId.toString())))
+                .subscribe().asCompletionStage()
+                .thenApply(exists -> exists.toInteger() == 0)
+                .exceptionally(e -> {
+                    // the engine's claim still collapses a real duplicate
+                    log.warn("Could not check correlationId {}: {}", correlationId, e.getMessage());
+                    return true;
+                });
+    }
+
+    /**
+     * Takes the id's marker; completes with {@code false} when another payment already holds it.
+     */
+    CompletableFuture<Boolean> claim(final String correlationId) {
+        return redisAPI.set(List.of(seenKey(correlationId), "1", "NX", "PX", String.valueOf(ttlInMs)))
+                .subscribe().asCompletionStage()
+                .thenApply(reply -> reply != null)
+                .toCompletableFuture();
+    }
+}
@@ -0,0 +1,84 @@
+package io.andrelucas.payments;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs payments through {@link PaymentClient} under a node-wide limit of
+ * {@code app.consumer-concurrency} in-flight payments, shared by every queue engine and the retry
+ * scheduler. Payments neither processor took are handed to the {@link PaymentRetryQueue}; payments
+ * rejected with a 4xx other than 422 (already accepted) are dropped.
+ */
+@ApplicationScoped
+public class PaymentDispatcher {
+
+    private final PaymentClient paymentClient;
+    private final PaymentRetryQueue retryQueue;
+    private final Semaphore permits;
+
+    public PaymentDispatcher(final PaymentClient paymentClient,
+                             final PaymentRetryQueue retryQueue,
+                             @ConfigProperty(name = "app.consumer-concurrency") final int concurrency) {
+        this.paymentClient = paymentClient;
+        this.retryQueue = retryQueue;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Blocks until at least one permit is free, then takes as many as are free, up to {@code max}.
+     * Every permit must be given back either through {@link #release(int)} or by a {@link #dispatch}.
+     */
+    public int acquire(final int max) throws InterruptedException {
+        permits.acquire();
+        int count = 1 + permits.drainPermits();
+        if (count > max) {
+            permits.release(count - max);
+            count = max;
+        }
+        return count;
+    }
+
+    public void release(final int count) {
+        if (count > 0) {
+            permits.release(count);
+        }
+    }
+
+    /**
+     * Consumes one acquired permit. Completes with {@code true} once the payment is recorded,
+     * {@code false} once it is scheduled for its next attempt or rejected for good, exceptionally when
+     * neither could be done.
+     */
+    public CompletableFuture<Boolean> dispatch(final PaymentClient.PaymentClientRequest paymentRequest, final int attempt) {
+        return dispatch(paymentRequest, attempt, null);
+    }
+
+    /**
+     * Dispatches a claimed retry; its lease, {@code leasedMember}, is released once the payment is
+     * recorded or rejected, or replaced by the next attempt.
+     */
+    public CompletableFuture<Boolean> dispatch(final PaymentClient.PaymentClientRequest paymentRequest,
+                                               final int attempt,
+                                               final String leasedMember) {
+        CompletableFuture<Boolean> handled;
+        try {
+            handled = paymentClient.processPayment(paymentRequest)
+                    .thenCompose(outcome -> {
+                        if (outcome == PaymentClient.Outcome.UNPROCESSED) {
+                            return retryQueue.schedule(paymentRequest, attempt + 1, leasedMember).thenApply(v -> false);
+                        }
+                        boolean recorded = outcome == PaymentClient.Outcome.RECORDED;
+                        if (leasedMember != null) {
+                            return retryQueue.complete(leasedMember).thenApply(v -> recorded);
+                        }
+                        return CompletableFuture.completedFuture(recorded);
+                    });
+        } catch (RuntimeException e) {
+            handled = CompletableFuture.failedFuture(e);
+        }
+        return handled.whenComplete((v, err) -> permits.release());
+    }
+}
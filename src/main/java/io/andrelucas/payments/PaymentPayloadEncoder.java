@@ -0,0 +1,219 @@
+package io.andrelucas.payments;
+
+import io.netty.buffer.Unpooled;
+import io.andrelucas.summary.PaymentBuckets;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the fixed-shape processor payload straight into pooled byte arrays:
+ * <pre>{"correlationId":"...","amount":19.90,"requestedAt":"2025-07-15T12:34:56.789Z"}</pre>
+ * The compact timeline member (see {@link PaymentBuckets}) is derived from the same bytes.
+ */
+public final class PaymentPayloadEncoder {
+    private static final int CAPACITY = 256;
+    private static final int MAX_POOLED = 1024;
+
+    private static final byte[] CORRELATION_ID = ascii("{\"correlationId\":\"");
+    private static final byte[] AMOUNT = ascii("\",\"amount\":");
+    private static final byte[] REQUESTED_AT = ascii(",\"requestedAt\":\"");
+    private static final byte[] END = ascii("\"}");
+
+    private static final ConcurrentLinkedQueue<Payload> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private PaymentPayloadEncoder() {
+    }
+
+    public static Payload encode(final PaymentClient.PaymentClientRequest paymentRequest) {
+        Payload payload = POOL.poll();
+        if (payload == null) {
+            payload = new Payload();
+        } else {
+            POOLED.decrementAndGet();
+        }
+        payload.length = encode(paymentRequest, payload.bytes);
+        return payload;
+    }
+
+    public static void release(final Payload payload) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(payload);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    static int encode(final PaymentClient.PaymentClientRequest paymentRequest, final byte[] dst) {
+        int pos = put(dst, 0, CORRELATION_ID);
+        String correlationId = paymentRequest.correlationId();
+        for (int i = 0, length = correlationId.length(); i < length; i++) {
+            dst[pos++] = (byte) correlationId.charAt(i);
+        }
+        pos = put(dst, pos, AMOUNT);
+        pos = writeCents(dst, pos, paymentRequest.amountInCents());
+        pos = put(dst, pos, REQUESTED_AT);
+        pos = writeIsoInstant(dst, pos, paymentRequest.requestedAt());
+        return put(dst, pos, END);
+    }
+
+    static int writeCents(final byte[] dst, int pos, final long cents) {
+        pos = writeLong(dst, pos, cents / 100);
+        int fraction = (int) (cents % 100);
+        dst[pos++] = '.';
+        dst[pos++] = (byte) ('0' + fraction / 10);
+        dst[pos++] = (byte) ('0' + fraction % 10);
+        return pos;
+    }
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss.SSSZ} in UTC, using the civil-from-days conversion instead of
+     * {@link java.time.format.DateTimeFormatter}.
+     */
+    static int writeIsoInstant(final byte[] dst, int pos, final long epochMillis) {
+        long days = Math.floorDiv(epochMillis, 86_400_000L);
+        int millisOfDay = (int) Math.floorMod(epochMillis, 86_400_000L);
+
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        pos = write4(dst, pos, year);
+        dst[pos++] = '-';
+        pos = write2(dst, pos, month);
+        dst[pos++] = '-';
+        pos = write2(dst, pos, day);
+        dst[pos++] = 'T';
+        pos = write2(dst, pos, millisOfDay / 3_600_000);
+        dst[pos++] = ':';
+        pos = write2(dst, pos, millisOfDay / 60_000 % 60);
+        dst[pos++] = ':';
+        pos = write2(dst, pos, millisOfDay / 1000 % 60);
+        dst[pos++] = '.';
+        int millis = millisOfDay % 1000;
+        dst[pos++] = (byte) ('0' + millis / 100);
+        pos = write2(dst, pos, millis % 100);
+        dst[pos++] = 'Z';
+        return pos;
+    }
+
+    /**
+     * Packs the 36-char textual UUID starting at {@code from} into 16 bytes, skipping the dashes.
+     */
+    static int writeUuid(final byte[] src, final int from, final byte[] dst) {
+        int pos = 0;
+        for (int i = from, end = from + 36; i < end; i++) {
+            if (src[i] == '-') {
+                continue;
+            }
+            dst[pos++] = (byte) (hex(src[i]) << 4 | hex(src[++i]));
+        }
+        return pos;
+    }
+
+    static int writeVarint(final byte[] dst, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            dst[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[pos++] = (byte) value;
+        return pos;
+    }
+
+    static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            length++;
+            value >>>= 7;
+        }
+        return length;
+    }
+
+    private static int hex(final byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex digit in correlationId: " + (char) c);
+    }
+
+    private static int writeLong(final byte[] dst, int pos, long value) {
+        if (value == 0) {
+            dst[pos++] = '0';
+            return pos;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dst[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private static int write4(final byte[] dst, final int pos, final int value) {
+        write2(dst, pos, value / 100);
+        return write2(dst, pos + 2, value % 100);
+    }
+
+    private static int write2(final byte[] dst, final int pos, final int value) {
+        dst[pos] = (byte) ('0' + value / 10);
+        dst[pos + 1] = (byte) ('0' + value % 10);
+        return pos + 2;
+    }
+
+    private static int put(final byte[] dst, final int pos, final byte[] fragment) {
+        System.arraycopy(fragment, 0, dst, pos, fragment.length);
+        return pos + fragment.length;
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static final class Payload {
+        private final byte[] bytes = new byte[CAPACITY];
+        private int length;
+
+        /**
+         * Processor request body, wrapping the encoded bytes without copying them.
+         */
+        @SuppressWarnings("deprecation") // the only zero-copy wrap Vert.x 4 exposes
+        public Buffer processorBody() {
+            return Buffer.buffer(Unpooled.wrappedBuffer(bytes, 0, length));
+        }
+
+        /**
+         * Timeline member for the processor that accepted the payment: the UUID read back from the
+         * encoded correlationId, the varint cents and the processor tag.
+         */
+        public byte[] timelineMember(final Processor processor, final long amountInCents) {
+            byte[] member = new byte[PaymentBuckets.UUID_BYTES + varintLength(amountInCents) + 1];
+            int pos = writeUuid(bytes, CORRELATION_ID.length, member);
+            pos = writeVarint(member, pos, amountInCents);
+            member[pos] = processor == Processor.DEFAULT ? PaymentBuckets.DEFAULT_TAG : PaymentBuckets.FALLBACK_TAG;
+            return member;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -1,37 +1,97 @@
 package io.andrelucas.payments;
 
-import io.vertx.mutiny.redis.client.RedisAPI;
+import io.andrelucas.RedisScript;
+import io.andrelucas.metrics.PipelineMetrics;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Producing side of the Redis Streams engine. Queues XADDs in a lock-free buffer and sends them to
+ * Redis as one pipelined batch, either once {@code app.producer-batch-size} entries are waiting or
+ * {@code app.producer-flush-window-in-us} after the first one arrived; with nothing waiting, the
+ * flushing thread stays parked. At most {@code app.producer-max-pending} entries wait at a time, and
+ * payments beyond that are refused. Each entry is added by a script that first claims the
+ * correlationId's marker, so a duplicate never reaches the stream.
+ */
 @ApplicationScoped
-public class PaymentProducer {
+@LookupIfProperty(name = "app.queue-engine", stringValue = PaymentQueue.REDIS_ENGINE)
+public class PaymentProducer implements PaymentQueue {
     private static final Logger log = LoggerFactory.getLogger(PaymentProducer.class);
 
-    private final RedisAPI redisAPI;
+    static final RedisScript XADD_SCRIPT = new RedisScript("""
+            if redis.call('SET', KEYS[2], '1', 'NX', 'PX', ARGV[1]) then
+                return redis.call('XADD', KEYS[1], '*', 'correlationId', ARGV[2], 'amount', ARGV[3], 'requestedAt', ARGV[4])
+            end
+            return false
+            """);
 
-    public PaymentProducer(RedisAPI redisAPI) {
-        this.redisAPI = redisAPI;
+    private final Redis redis;
+    private final PipelineMetrics metrics;
+    private final long dedupTtlInMs;
+    private final Executor executor;
+    private final MicroBatcher<Consumer<Request>> batcher;
+
+    public PaymentProducer(final Redis redis,
+                           final PipelineMetrics metrics,
+                           final PaymentDeduplicator deduplicator,
+                           @VirtualThreads final Executor executor,
+                           @ConfigProperty(name = "app.producer-batch-size") final int batchSize,
+                           @ConfigProperty(name = "app.producer-flush-window-in-us") final long flushWindowInUs,
+                           @ConfigProperty(name = "app.producer-max-pending") final int maxPending) {
+        this.redis = redis;
+        this.metrics = metrics;
+        this.dedupTtlInMs = deduplicator.ttlInMs();
+        this.executor = executor;
+        this.batcher = new MicroBatcher<>(batchSize, maxPending, TimeUnit.MICROSECONDS.toNanos(flushWindowInUs), this::flush);
+    }
+
+    @PostConstruct
+    void init() {
+        batcher.start(executor);
     }
 
-    public void create(final PaymentRequest paymentRequest) {
+    @Override
+    public boolean enqueue(final UUID paymentId, final long amountInCents) {
         final var requestedAt = Instant.now().toEpochMilli();
-        final var args = List.of(
-                "payments_stream",
-                "*",
-                "correlationId", paymentRequest.correlationId().toString(),
-                "amount", paymentRequest.amount().toString(),
-                "requestedAt", String.valueOf(requestedAt)
-        );
-
-        redisAPI.xadd(args)
+        final var correlationId = paymentId.toString();
+        final Consumer<Request> xadd = request -> request
+                .arg("payments_stream")
+                .arg(PaymentDeduplicator.seenKey(correlationId))
+                .arg(dedupTtlInMs)
+                .arg(correlationId)
+                .arg(Cents.format(amountInCents))
+                .arg(requestedAt);
+
+        if (!batcher.offer(xadd)) {
+            log.warn("Producer buffer full, rejecting payment {}", correlationId);
+            return false;
+        }
+        return true;
+    }
+
+    private void flush(final List<Consumer<Request>> batch) {
+        long start = System.nanoTime();
+        XADD_SCRIPT.batch(redis, 2, batch)
                 .onFailure()
                 .invoke(e -> log.error("Error creating payments stream", e))
                 .subscribe()
-                .with(entryId -> log.debug("Successfully created payment on stream - ID:{} | correlationId: {}", entryId, paymentRequest.correlationId()));
+                .with(entryIds -> {
+                    metrics.producerFlush(entryIds.size(), System.nanoTime() - start);
+                    log.debug("Successfully created {} payments on stream", entryIds.size());
+                });
     }
 }
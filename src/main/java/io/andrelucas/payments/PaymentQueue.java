@@ -0,0 +1,20 @@
+package io.andrelucas.payments;
+
+import java.util.UUID;
+
+/**
+ * Hands accepted payments over to the processing side. The engine is picked at startup by
+ * {@code app.queue-engine}: {@value #REDIS_ENGINE} goes through Redis Streams and is shared by all
+ * nodes, {@value #RING_BUFFER_ENGINE} keeps the payments inside this JVM.
+ */
+public interface PaymentQueue {
+    String REDIS_ENGINE = "redis";
+    String RING_BUFFER_ENGINE = "ring-buffer";
+
+    /**
+     * Called on the event loop, so it must not block.
+     *
+     * @return {@code false} when the queue is full and the payment was not accepted
+     */
+    boolean enqueue(UUID correlationId, long amountInCents);
+}
@@ -0,0 +1,167 @@
+package io.andrelucas.payments;
+
+import io.andrelucas.RedisScript;
+import io.andrelucas.summary.PaymentBuckets;
+import io.andrelucas.summary.PaymentJournal;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes accepted payments to the shared timeline and their buckets, and acknowledges their stream
+ * entries, in one script call per batch of up to {@code app.recorder-batch-size} payments, flushed
+ * {@code app.recorder-flush-window-in-us} after the first one arrived; with nothing waiting, the
+ * flushing thread stays parked. Recording and acknowledging are atomic, and a payment the timeline
+ * already holds is neither counted again nor added to the ledger.
+ * <p>
+ * A processor already took every payment that gets here, so a batch the script fails on is queued
+ * again, up to {@code app.recorder-max-attempts} times, {@code app.recorder-retry-delay-in-ms} times the
+ * attempt apart, before the payment's future fails.
+ */
+@ApplicationScoped
+public class PaymentRecorder {
+    private static final Logger log = LoggerFactory.getLogger(PaymentRecorder.class);
+
+    // KEYS[4 + n] is the bucket hash of the n-th payment, so every key the script writes is declared;
+    // the watermark goes last, so whoever reads the new value also sees the writes above
+    static final RedisScript RECORD_SCRIPT = new RedisScript("""
+            local recorded = {}
+            local acks = {}
+            local changed = false
+            for n = 1, #KEYS - 4 do
+                local i = 2 + (n - 1) * 7
+                if redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1]) == 1 then
+                    redis.call('HINCRBY', KEYS[4 + n], ARGV[i + 2], 1)
+                    redis.call('HINCRBY', KEYS[4 + n], ARGV[i + 3], ARGV[i + 4])
+                    redis.call('ZADD', KEYS[2], 'NX', ARGV[i + 5], ARGV[i + 5])
+                    recorded[#recorded + 1] = 1
+                    changed = true
+                else
+                    recorded[#recorded + 1] = 0
+                end
+                if ARGV[i + 6] ~= '' then
+                    acks[#acks + 1] = ARGV[i + 6]
+                end
+            end
+            if #acks > 0 then
+                redis.call('XACK', KEYS[4], ARGV[1], unpack(acks))
+            end
+            if changed then
+                redis.call('INCR', KEYS[3])
+            end
+            return recorded
+            """);
+
+    private final Redis redis;
+    private final PaymentJournal paymentJournal;
+    private final Executor executor;
+    private final long bucketSizeInMs;
+    private final MicroBatcher<Pending> batcher;
+    private final int maxAttempts;
+    private final long retryDelayInMs;
+
+    public PaymentRecorder(final Redis redis,
+                           final PaymentJournal paymentJournal,
+                           @VirtualThreads final Executor executor,
+                           @ConfigProperty(name = "app.summary-bucket-in-ms") final long bucketSizeInMs,
+                           @ConfigProperty(name = "app.recorder-batch-size") final int batchSize,
+                           @ConfigProperty(name = "app.recorder-flush-window-in-us") final long flushWindowInUs,
+                           @ConfigProperty(name = "app.recorder-max-attempts") final int maxAttempts,
+                           @ConfigProperty(name = "app.recorder-retry-delay-in-ms") final long retryDelayInMs) {
+        this.redis = redis;
+        this.paymentJournal = paymentJournal;
+        this.executor = executor;
+        this.bucketSizeInMs = bucketSizeInMs;
+        this.batcher = new MicroBatcher<>(batchSize, Integer.MAX_VALUE, TimeUnit.MICROSECONDS.toNanos(flushWindowInUs), this::flush);
+        this.maxAttempts = maxAttempts;
+        this.retryDelayInMs = retryDelayInMs;
+    }
+
+    @PostConstruct
+    void init() {
+        batcher.start(executor);
+    }
+
+    /**
+     * Completes once the payment is recorded and, when it came from the stream, acknowledged.
+     */
+    public CompletableFuture<Void> record(final Processor processor,
+                       final PaymentClient.PaymentClientRequest paymentRequest,
+                       final byte[] timelineMember) {
+
+        Pending payment = new Pending(processor, paymentRequest, timelineMember, 1, new CompletableFuture<>());
+        batcher.offer(payment);
+        return payment.recorded();
+    }
+
+    private void flush(final List<Pending> batch) {
+        RECORD_SCRIPT.call(redis, 4 + batch.size(), request -> {
+                    request.arg(PaymentBuckets.TIMELINE_KEY)
+                            .arg(PaymentBuckets.BUCKET_INDEX_KEY)
+                            .arg(PaymentBuckets.WATERMARK_KEY)
+                            .arg("payments_stream");
+                    for (Pending p : batch) {
+                        request.arg(PaymentBuckets.bucketKey(PaymentBuckets.bucketOf(p.request().requestedAt(), bucketSizeInMs)));
+                    }
+                    request.arg("payments_group");
+                    for (Pending p : batch) {
+                        long requestedAt = p.request().requestedAt();
+                        long bucket = PaymentBuckets.bucketOf(requestedAt, bucketSizeInMs);
+                        request.arg(requestedAt)
+                                .arg(p.timelineMember())
+                                .arg(PaymentBuckets.countField(p.processor().key()))
+                                .arg(PaymentBuckets.centsField(p.processor().key()))
+                                .arg(p.request().amountInCents())
+                                .arg(bucket)
+                                .arg(p.request().entryId() == null ? "" : p.request().entryId());
+                    }
+                })
+                .subscribe()
+                .with(recorded -> completed(batch, recorded), e -> failed(batch, e));
+    }
+
+    private void completed(final List<Pending> batch, final Response recorded) {
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            if (recorded.get(i).toInteger() == 1) {
+                paymentJournal.record(p.request().requestedAt(), p.processor() == Processor.DEFAULT,
+                        p.request().amountInCents(), p.request().correlationId());
+            } else {
+                log.debug("Payment {} was already recorded", p.request().correlationId());
+            }
+            p.recorded().complete(null);
+        }
+        log.debug("Recorded {} payments", batch.size());
+    }
+
+    private void failed(final List<Pending> batch, final Throwable e) {
+        log.error("Got an error at to save {} payments", batch.size(), e);
+        for (Pending p : batch) {
+            if (p.attempt() >= maxAttempts) {
+                log.error("Giving up recording payment {} accepted by {} after {} attempts",
+                        p.request().correlationId(), p.processor().key(), p.attempt());
+                p.recorded().completeExceptionally(e);
+                continue;
+            }
+            Pending next = new Pending(p.processor(), p.request(), p.timelineMember(), p.attempt() + 1, p.recorded());
+            CompletableFuture.delayedExecutor(retryDelayInMs * p.attempt(), TimeUnit.MILLISECONDS)
+                    .execute(() -> batcher.offer(next));
+        }
+    }
+
+    private record Pending(Processor processor,
+                           PaymentClient.PaymentClientRequest request,
+                           byte[] timelineMember,
+                           int attempt,
+                           CompletableFuture<Void> recorded) {}
+}
@@ -4,6 +4,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
 import java.util.UUID;
 
+/**
+ * The body of {@code POST /payments}. The resource reads it with {@link PaymentRequestDecoder}; the
+ * record documents the shape and is what clients and tests serialize.
+ */
 public record PaymentRequest(
     @JsonProperty("correlationId") UUID correlationId, 
     @JsonProperty("amount") BigDecimal amount
@@ -0,0 +1,186 @@
+package io.andrelucas.payments;
+
+import java.util.UUID;
+
+/**
+ * Reads the fixed-shape ingress body straight from its bytes:
+ * <pre>{"correlationId":"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3","amount":19.90}</pre>
+ * Both fields are required, in any order, with optional whitespace between tokens. Anything else -
+ * unknown or repeated fields, a malformed UUID, a signed, exponent or leading-zero amount - is
+ * rejected. The amount is rounded half-up to cents, as {@link Cents#of} does.
+ */
+final class PaymentRequestDecoder {
+    private static final int MAX_UNIT_DIGITS = 15;
+
+    private static final byte[] CORRELATION_ID = "correlationId".getBytes();
+    private static final byte[] AMOUNT = "amount".getBytes();
+
+    record Decoded(UUID correlationId, long amountInCents) {}
+
+    private final byte[] body;
+    private int pos;
+
+    private PaymentRequestDecoder(final byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * @return {@code null} when the body is not a valid payment request
+     */
+    static Decoded decode(final byte[] body) {
+        return new PaymentRequestDecoder(body).decode();
+    }
+
+    private Decoded decode() {
+        UUID correlationId = null;
+        long cents = -1;
+
+        if (!consume('{')) {
+            return null;
+        }
+        do {
+            if (field(CORRELATION_ID)) {
+                if (correlationId != null || (correlationId = uuid()) == null) {
+                    return null;
+                }
+            } else if (field(AMOUNT)) {
+                if (cents >= 0 || (cents = cents()) < 0) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        } while (consume(','));
+
+        if (!consume('}') || correlationId == null || cents < 0) {
+            return null;
+        }
+        skipWhitespace();
+        return pos == body.length ? new Decoded(correlationId, cents) : null;
+    }
+
+    /** Matches {@code "name" :}. */
+    private boolean field(final byte[] name) {
+        skipWhitespace();
+        int end = pos + name.length + 2;
+        if (end > body.length || body[pos] != '"' || body[end - 1] != '"') {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (body[pos + 1 + i] != name[i]) {
+                return false;
+            }
+        }
+        pos = end;
+        return consume(':');
+    }
+
+    private UUID uuid() {
+        skipWhitespace();
+        if (pos + 38 > body.length || body[pos] != '"' || body[pos + 37] != '"') {
+            return null;
+        }
+        int start = pos + 1;
+        if (body[start + 8] != '-' || body[start + 13] != '-' || body[start + 18] != '-' || body[start + 23] != '-') {
+            return null;
+        }
+        long group1 = hex(start, 8);
+        long group2 = hex(start + 9, 4);
+        long group3 = hex(start + 14, 4);
+        long group4 = hex(start + 19, 4);
+        long group5 = hex(start + 24, 12);
+        if ((group1 | group2 | group3 | group4 | group5) < 0) {
+            return null;
+        }
+        pos += 38;
+        return new UUID(group1 << 32 | group2 << 16 | group3, group4 << 48 | group5);
+    }
+
+    /** Up to 12 hex digits; {@code -1} when one of them is not hex. */
+    private long hex(final int from, final int length) {
+        long value = 0;
+        for (int i = from; i < from + length; i++) {
+            int b = body[i];
+            int digit;
+            if (b >= '0' && b <= '9') {
+                digit = b - '0';
+            } else if (b >= 'a' && b <= 'f') {
+                digit = b - 'a' + 10;
+            } else if (b >= 'A' && b <= 'F') {
+                digit = b - 'A' + 10;
+            } else {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /** A non-negative JSON number without exponent, in cents; {@code -1} when malformed. */
+    private long cents() {
+        skipWhitespace();
+        int start = pos;
+        long units = 0;
+        while (pos < body.length && isDigit(body[pos])) {
+            units = units * 10 + (body[pos++] - '0');
+        }
+        int unitDigits = pos - start;
+        if (unitDigits == 0 || unitDigits > MAX_UNIT_DIGITS || (unitDigits > 1 && body[start] == '0')) {
+            return -1;
+        }
+
+        long fraction = 0;
+        if (pos < body.length && body[pos] == '.') {
+            pos++;
+            int fractionStart = pos;
+            int roundingDigit = 0;
+            while (pos < body.length && isDigit(body[pos])) {
+                int digit = body[pos] - '0';
+                int index = pos - fractionStart;
+                if (index < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (index == 2) {
+                    roundingDigit = digit;
+                }
+                pos++;
+            }
+            int fractionDigits = pos - fractionStart;
+            if (fractionDigits == 0) {
+                return -1;
+            }
+            if (fractionDigits == 1) {
+                fraction *= 10;
+            }
+            if (roundingDigit >= 5) {
+                fraction++;
+            }
+        }
+        if (pos < body.length && (body[pos] == 'e' || body[pos] == 'E')) {
+            return -1;
+        }
+        return units * 100 + fraction;
+    }
+
+    private boolean consume(final char expected) {
+        skipWhitespace();
+        if (pos < body.length && body[pos] == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < body.length) {
+            byte b = body[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -1,6 +1,8 @@
 package io.andrelucas.payments;
 
-import io.quarkus.virtual.threads.VirtualThreads;
+import io.andrelucas.metrics.PipelineMetrics;
+import io.smallrye.common.annotation.NonBlocking;
+import jakarta.enterprise.inject.Instance;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
@@ -8,28 +10,53 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.RestResponse;
 
-import java.util.concurrent.Executor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+/**
+ * Runs on the event loop end to end: the body is read by {@link PaymentRequestDecoder} instead of
+ * Jackson, and both the dedup fast path and the enqueue are non-blocking.
+ */
 @Path("/payments")
 public class PaymentResource {
 
-    private final PaymentProducer paymentProducer;
-    private final Executor executor;
+    private final PaymentQueue paymentQueue;
+    private final PaymentDeduplicator deduplicator;
+    private final PipelineMetrics metrics;
 
-    public PaymentResource(final PaymentProducer paymentProducer,
-                           @VirtualThreads final Executor executor) {
+    public PaymentResource(final Instance<PaymentQueue> paymentQueues,
+                           final PaymentDeduplicator deduplicator,
+                           final PipelineMetrics metrics) {
 
-        this.paymentProducer = paymentProducer;
-        this.executor = executor;
+        this.paymentQueue = paymentQueues.get();
+        this.deduplicator = deduplicator;
+        this.metrics = metrics;
     }
 
     @POST
+    @NonBlocking
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public RestResponse<Void> create(PaymentRequest paymentRequest) {
-
-        executor.execute(() -> paymentProducer.create(paymentRequest));
-
-        return RestResponse.ok();
+    public CompletionStage<RestResponse<Void>> create(byte[] body) {
+
+        PaymentRequestDecoder.Decoded paymentRequest = PaymentRequestDecoder.decode(body);
+        if (paymentRequest == null) {
+            metrics.ingressMalformed();
+            return CompletableFuture.completedStage(RestResponse.status(RestResponse.Status.BAD_REQUEST));
+        }
+
+        return deduplicator.admit(paymentRequest.correlationId()).thenApply(admitted -> {
+            if (!admitted) {
+                // already taken: same answer as the first time, nothing enqueued
+                metrics.ingressDuplicate();
+                return RestResponse.ok();
+            }
+            boolean accepted = paymentQueue.enqueue(paymentRequest.correlationId(), paymentRequest.amountInCents());
+            metrics.ingress(accepted);
+            if (!accepted) {
+                return RestResponse.status(RestResponse.Status.SERVICE_UNAVAILABLE);
+            }
+            return RestResponse.ok();
+        });
     }
 }
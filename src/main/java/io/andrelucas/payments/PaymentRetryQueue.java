@@ -0,0 +1,157 @@
+package io.andrelucas.payments;
+
+import io.andrelucas.RedisScript;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Payments refused by both processors, kept in a Redis sorted set scored by their next attempt time.
+ * <p>
+ * Claiming a retry leases it instead of removing it: its score moves to {@code now + app.retry-lease-in-ms},
+ * so a node that dies while handling it only delays it. The member is removed once the payment is
+ * recorded ({@link #complete}) or swapped for its next attempt ({@link #schedule}). Payments still
+ * refused after {@code app.retry-max-attempts} attempts are moved to the {@value #DEAD_LETTER_KEY} list.
+ */
+@ApplicationScoped
+public class PaymentRetryQueue {
+    private static final Logger log = LoggerFactory.getLogger(PaymentRetryQueue.class);
+    static final String RETRY_KEY = "payments:retry";
+    static final String DEAD_LETTER_KEY = "payments:retry:dead";
+
+    // leases the due members atomically, so each retry is claimed by a single node at a time
+    static final RedisScript CLAIM_SCRIPT = new RedisScript("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, member in ipairs(due) do
+                redis.call('ZADD', KEYS[1], 'XX', ARGV[3], member)
+            end
+            return due
+            """);
+
+    // drops the leased member, if any, and adds the next attempt or dead-letters the payment
+    static final RedisScript RESCHEDULE_SCRIPT = new RedisScript("""
+            if ARGV[1] ~= '' then
+                redis.call('ZREM', KEYS[1], ARGV[1])
+            end
+            if ARGV[2] == '' then
+                redis.call('RPUSH', KEYS[2], ARGV[3])
+            else
+                redis.call('ZADD', KEYS[1], ARGV[2], ARGV[3])
+            end
+            return 1
+            """);
+
+    private final Redis redis;
+    private final long baseBackoffInMs;
+    private final long maxBackoffInMs;
+    private final long leaseInMs;
+    private final int maxAttempts;
+
+    public PaymentRetryQueue(final Redis redis,
+                             @ConfigProperty(name = "app.retry-base-backoff-in-ms") final long baseBackoffInMs,
+                             @ConfigProperty(name = "app.retry-max-backoff-in-ms") final long maxBackoffInMs,
+                             @ConfigProperty(name = "app.retry-lease-in-ms") final long leaseInMs,
+                             @ConfigProperty(name = "app.retry-max-attempts") final int maxAttempts) {
+        this.redis = redis;
+        this.baseBackoffInMs = baseBackoffInMs;
+        this.maxBackoffInMs = maxBackoffInMs;
+        this.leaseInMs = leaseInMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Schedules {@code attempt}, replacing {@code leasedMember} when the payment came from a claimed retry.
+     */
+    public CompletableFuture<Void> schedule(final PaymentClient.PaymentClientRequest paymentRequest,
+                                            final int attempt,
+                                            final String leasedMember) {
+        boolean dead = attempt > maxAttempts;
+        long nextAttemptAt = System.currentTimeMillis() + backoff(attempt);
+        String member = paymentRequest.correlationId() + "|" +
+                paymentRequest.amountInCents() + "|" +
+                paymentRequest.requestedAt() + "|" +
+                attempt;
+
+        return RESCHEDULE_SCRIPT.call(redis, 2, request -> request
+                        .arg(RETRY_KEY)
+                        .arg(DEAD_LETTER_KEY)
+                        .arg(leasedMember == null ? "" : leasedMember)
+                        .arg(dead ? "" : String.valueOf(nextAttemptAt))
+                        .arg(member))
+                .onFailure()
+                .invoke(e -> log.error("Got an error at to schedule retry of payment {}", paymentRequest.correlationId(), e))
+                .onItem()
+                .invoke(r -> {
+                    if (dead) {
+                        log.error("Payment {} refused {} times, moved to {}", paymentRequest.correlationId(), maxAttempts, DEAD_LETTER_KEY);
+                    } else {
+                        log.info("Payment {} scheduled for attempt {} at {}", paymentRequest.correlationId(), attempt, nextAttemptAt);
+                    }
+                })
+                .replaceWithVoid()
+                .subscribe().asCompletionStage();
+    }
+
+    /**
+     * Releases the lease of a retry that no longer needs another attempt.
+     */
+    public CompletableFuture<Void> complete(final String leasedMember) {
+        return redis.send(Request.cmd(Command.ZREM).arg(RETRY_KEY).arg(leasedMember))
+                .onFailure()
+                .invoke(e -> log.warn("Could not remove retry {}, it will be attempted again: {}", leasedMember, e.getMessage()))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid()
+                .subscribe().asCompletionStage();
+    }
+
+    public List<Retry> claimDue(final int limit) {
+        long now = System.currentTimeMillis();
+        Response due = CLAIM_SCRIPT.call(redis, 1, request -> request
+                        .arg(RETRY_KEY)
+                        .arg(now)
+                        .arg(limit)
+                        .arg(now + leaseInMs))
+                .await().indefinitely();
+
+        List<Retry> retries = new ArrayList<>();
+        if (due != null) {
+            for (Response member : due) {
+                retries.add(Retry.from(member.toString()));
+            }
+        }
+        return retries;
+    }
+
+    /**
+     * Exponential backoff capped at {@code app.retry-max-backoff-in-ms}, with "equal jitter" so nodes
+     * retrying at the same time spread out instead of hitting a recovering processor together.
+     */
+    long backoff(final int attempt) {
+        long exponential = baseBackoffInMs << Math.min(attempt - 1, 30);
+        long capped = Math.min(maxBackoffInMs, exponential);
+        long half = capped / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    public record Retry(PaymentClient.PaymentClientRequest request, int attempt, String member) {
+
+        static Retry from(final String member) {
+            String[] parts = member.split("\\|");
+            return new Retry(new PaymentClient.PaymentClientRequest(parts[0],
+                    Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2])),
+                    Integer.parseInt(parts[3]),
+                    member);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.andrelucas.payments;
+
+import io.quarkus.runtime.Startup;
+import io.quarkus.virtual.threads.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Claims due retries in batches, never more than the {@link PaymentDispatcher} has permits for, and
+ * dispatches them again; a retry that fails once more goes back to the queue with the next backoff.
+ * A retry that could be neither recorded nor rescheduled keeps its lease and comes back when it expires.
+ */
+@Startup
+@ApplicationScoped
+public class PaymentRetryScheduler {
+    private static final Logger log = LoggerFactory.getLogger(PaymentRetryScheduler.class);
+
+    private final PaymentRetryQueue retryQueue;
+    private final PaymentDispatcher dispatcher;
+    private final Executor executor;
+    private final long pollIntervalInMs;
+    private final int batchSize;
+
+    public PaymentRetryScheduler(final PaymentRetryQueue retryQueue,
+                                 final PaymentDispatcher dispatcher,
+                                 @VirtualThreads final Executor executor,
+                                 @ConfigProperty(name = "app.retry-poll-interval-in-ms") final long pollIntervalInMs,
+                                 @ConfigProperty(name = "app.retry-batch-size") final int batchSize) {
+        this.retryQueue = retryQueue;
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.pollIntervalInMs = pollIntervalInMs;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void init() {
+        executor.execute(this::schedulerLoop);
+    }
+
+    private void schedulerLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int permits = 0;
+            try {
+                permits = dispatcher.acquire(batchSize);
+                List<PaymentRetryQueue.Retry> due = retryQueue.claimDue(permits);
+                dispatcher.release(permits - due.size());
+                permits = 0;
+
+                due.forEach(this::retry);
+                if (due.isEmpty()) {
+                    Thread.sleep(pollIntervalInMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                dispatcher.release(permits);
+                log.error("Error while retrying payments", e);
+                pause();
+            }
+        }
+    }
+
+    private void retry(final PaymentRetryQueue.Retry retry) {
+        dispatcher.dispatch(retry.request(), retry.attempt(), retry.member())
+                .exceptionally(err -> {
+                    log.error("Payment {} could not be retried nor rescheduled", retry.request().correlationId(), err);
+                    return null;
+                });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pollIntervalInMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.andrelucas.payments;
+
+import io.andrelucas.RedisScript;
+
+import java.util.List;
+
+/**
+ * Every Lua script the payment pipeline runs, so they can be loaded before the first call.
+ */
+public final class PaymentScripts {
+
+    public static final List<RedisScript> ALL = List.of(
+            PaymentProducer.XADD_SCRIPT,
+            PaymentRecorder.RECORD_SCRIPT,
+            PaymentRetryQueue.CLAIM_SCRIPT,
+            PaymentRetryQueue.RESCHEDULE_SCRIPT);
+
+    private PaymentScripts() {
+    }
+}
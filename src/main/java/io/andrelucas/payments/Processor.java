@@ -0,0 +1,16 @@
+package io.andrelucas.payments;
+
+public enum Processor {
+    DEFAULT("default"),
+    FALLBACK("fallback");
+
+    private final String key;
+
+    Processor(final String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
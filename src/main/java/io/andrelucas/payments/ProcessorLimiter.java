@@ -0,0 +1,117 @@
+package io.andrelucas.payments;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-flight limit for one processor, adjusted AIMD-style from each call's outcome, plus a circuit
+ * breaker.
+ * <p>
+ * A call answered within the latency target grows the limit by {@code 1/limit}, about one per round
+ * trip. A slow call, an error or a timeout shrinks it by the backoff ratio, at most once per latency
+ * target, so the calls that were in flight during one overload only count once. After enough consecutive
+ * errors or timeouts the breaker opens and refuses every call. Once the open period is over, a single
+ * half-open probe decides whether it closes again.
+ */
+final class ProcessorLimiter {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetInNanos;
+    private final double backoffRatio;
+    private final int failureThreshold;
+    private final long openInNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openUntil;
+    private volatile int currentLimit;
+    private double limit;
+    private boolean decreased;
+    private long lastDecreaseAt;
+
+    ProcessorLimiter(final int minLimit, final int maxLimit, final int initialLimit,
+                     final long latencyTargetInNanos, final double backoffRatio,
+                     final int failureThreshold, final long openInNanos) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTargetInNanos = latencyTargetInNanos;
+        this.backoffRatio = backoffRatio;
+        this.failureThreshold = failureThreshold;
+        this.openInNanos = openInNanos;
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.currentLimit = (int) limit;
+    }
+
+    /** Every successful acquire must be followed by exactly one of the {@code on*} calls. */
+    boolean tryAcquire(final long nowNanos) {
+        State current = state.get();
+        if (current == State.OPEN) {
+            if (nowNanos - openUntil < 0 || !state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                return false;
+            }
+            inFlight.incrementAndGet();
+            return true;
+        }
+        if (current == State.HALF_OPEN) {
+            return false;
+        }
+
+        int taken;
+        do {
+            taken = inFlight.get();
+            if (taken >= currentLimit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(taken, taken + 1));
+        return true;
+    }
+
+    void onSuccess(final long latencyInNanos, final long nowNanos) {
+        inFlight.decrementAndGet();
+        consecutiveFailures.set(0);
+        state.compareAndSet(State.HALF_OPEN, State.CLOSED);
+        adjust(latencyInNanos <= latencyTargetInNanos, nowNanos);
+    }
+
+    void onFailure(final long nowNanos) {
+        inFlight.decrementAndGet();
+        if (state.get() == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil = nowNanos + openInNanos;
+            consecutiveFailures.set(0);
+            state.set(State.OPEN);
+        }
+        adjust(false, nowNanos);
+    }
+
+    /** The call never reached the processor, so it says nothing about it. */
+    void onIgnored() {
+        inFlight.decrementAndGet();
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    int limit() {
+        return currentLimit;
+    }
+
+    State state() {
+        return state.get();
+    }
+
+    private synchronized void adjust(final boolean healthy, final long nowNanos) {
+        if (healthy) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        } else {
+            if (decreased && nowNanos - lastDecreaseAt < latencyTargetInNanos) {
+                return;
+            }
+            decreased = true;
+            lastDecreaseAt = nowNanos;
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+        currentLimit = (int) limit;
+    }
+}
@@ -0,0 +1,38 @@
+package io.andrelucas.payments;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link ProcessorLimiter} per processor. The ceiling of each is its connection pool size, so
+ * calls wait here instead of in the pool behind slow requests.
+ */
+@ApplicationScoped
+public class ProcessorLimiters {
+
+    private final ProcessorLimiter defaultLimiter;
+    private final ProcessorLimiter fallbackLimiter;
+
+    public ProcessorLimiters(@ConfigProperty(name = "app.limiter-min") final int minLimit,
+                             @ConfigProperty(name = "app.limiter-initial") final int initialLimit,
+                             @ConfigProperty(name = "app.limiter-latency-target-in-ms") final long latencyTargetInMs,
+                             @ConfigProperty(name = "app.limiter-backoff-ratio") final double backoffRatio,
+                             @ConfigProperty(name = "app.breaker-failure-threshold") final int failureThreshold,
+                             @ConfigProperty(name = "app.breaker-open-in-ms") final long openInMs,
+                             @ConfigProperty(name = "payment-processor.default.pool-size") final int defaultPoolSize,
+                             @ConfigProperty(name = "payment-processor.fallback.pool-size") final int fallbackPoolSize) {
+
+        long latencyTarget = TimeUnit.MILLISECONDS.toNanos(latencyTargetInMs);
+        long open = TimeUnit.MILLISECONDS.toNanos(openInMs);
+        this.defaultLimiter = new ProcessorLimiter(minLimit, defaultPoolSize, initialLimit,
+                latencyTarget, backoffRatio, failureThreshold, open);
+        this.fallbackLimiter = new ProcessorLimiter(minLimit, fallbackPoolSize, initialLimit,
+                latencyTarget, backoffRatio, failureThreshold, open);
+    }
+
+    ProcessorLimiter of(final Processor processor) {
+        return processor == Processor.DEFAULT ? defaultLimiter : fallbackLimiter;
+    }
+}
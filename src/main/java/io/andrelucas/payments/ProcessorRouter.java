@@ -0,0 +1,218 @@
+package io.andrelucas.payments;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.Startup;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.redis.client.RedisAPI;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which processor a payment goes to from the processors' service-health reports.
+ * <p>
+ * The health endpoint only accepts one call every 5 seconds, so the nodes elect a single poller
+ * through a Redis lock and share its result in a Redis hash; everyone else just reads the hash.
+ * Latencies observed by {@link PaymentClient} are folded into the reported ones.
+ */
+@Startup
+@ApplicationScoped
+public class ProcessorRouter {
+    private static final Logger log = LoggerFactory.getLogger(ProcessorRouter.class);
+    private static final String HEALTH_KEY = "payments:processor-health";
+    private static final String HEALTH_LOCK_KEY = "payments:processor-health:lock";
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    public enum Route {
+        DEFAULT(Processor.DEFAULT),
+        FALLBACK(Processor.FALLBACK),
+        HOLD(null);
+
+        private final Processor processor;
+
+        Route(final Processor processor) {
+            this.processor = processor;
+        }
+
+        public Processor processor() {
+            return processor;
+        }
+    }
+
+    private final String nodeName;
+    private final RedisAPI redisAPI;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final ProcessorTransport transport;
+    private final long healthCheckIntervalInMs;
+    private final long refreshIntervalInMs;
+    private final long maxDefaultLatencyInMs;
+
+    private final ProcessorStatus defaultStatus = new ProcessorStatus();
+    private final ProcessorStatus fallbackStatus = new ProcessorStatus();
+
+    public ProcessorRouter(@ConfigProperty(name = "app.consumer-name") final String nodeName,
+                           @ConfigProperty(name = "app.router-health-check-interval-in-ms") final long healthCheckIntervalInMs,
+                           @ConfigProperty(name = "app.router-refresh-interval-in-ms") final long refreshIntervalInMs,
+                           @ConfigProperty(name = "app.router-max-default-latency-in-ms") final long maxDefaultLatencyInMs,
+                           final RedisAPI redisAPI,
+                           final ProcessorTransport transport,
+                           final ObjectMapper objectMapper,
+                           @VirtualThreads final Executor executor) {
+
+        this.nodeName = nodeName;
+        this.redisAPI = redisAPI;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.transport = transport;
+        this.healthCheckIntervalInMs = healthCheckIntervalInMs;
+        this.refreshIntervalInMs = refreshIntervalInMs;
+        this.maxDefaultLatencyInMs = maxDefaultLatencyInMs;
+    }
+
+    @PostConstruct
+    void init() {
+        Multi.createFrom().ticks().every(Duration.ofMillis(refreshIntervalInMs))
+                .onOverflow().drop()
+                .subscribe()
+                .with(tick -> executor.execute(this::refresh),
+                        err -> log.error("Processor health refresh stopped", err));
+    }
+
+    public Route route() {
+        boolean defaultUp = !defaultStatus.failing;
+        boolean fallbackUp = !fallbackStatus.failing;
+
+        if (!defaultUp && !fallbackUp) {
+            return Route.HOLD;
+        }
+        if (!fallbackUp) {
+            return Route.DEFAULT;
+        }
+        if (!defaultUp) {
+            return Route.FALLBACK;
+        }
+
+        long defaultLatency = defaultStatus.latency();
+        if (defaultLatency <= maxDefaultLatencyInMs) {
+            return Route.DEFAULT;
+        }
+        // default is up but slow: only pay the fallback fee when fallback is clearly faster
+        return fallbackStatus.latency() <= maxDefaultLatencyInMs ? Route.FALLBACK : Route.HOLD;
+    }
+
+    /**
+     * @param healthy {@code false} for errors, timeouts and 5xx answers only, which mark the
+     *                processor as failing until its next health report
+     */
+    public void record(final Processor processor, final long latencyInMs, final boolean healthy) {
+        ProcessorStatus status = statusOf(processor);
+        status.observe(latencyInMs);
+        if (!healthy) {
+            status.failing = true;
+        }
+    }
+
+    private ProcessorStatus statusOf(final Processor processor) {
+        return processor == Processor.DEFAULT ? defaultStatus : fallbackStatus;
+    }
+
+    private void refresh() {
+        try {
+            Response lock = redisAPI.setAndAwait(List.of(HEALTH_LOCK_KEY, nodeName,
+                    "NX", "PX", String.valueOf(healthCheckIntervalInMs)));
+
+            if (lock != null) {
+                pollAndPublish();
+            } else {
+                readShared();
+            }
+        } catch (Exception e) {
+            log.error("Error while refreshing processor health", e);
+        }
+    }
+
+    private void pollAndPublish() {
+        ServiceHealth defaultHealth = poll(Processor.DEFAULT);
+        ServiceHealth fallbackHealth = poll(Processor.FALLBACK);
+
+        List<String> args = new java.util.ArrayList<>();
+        args.add(HEALTH_KEY);
+        if (defaultHealth != null) {
+            defaultStatus.update(defaultHealth);
+            args.addAll(List.of("default-failing", String.valueOf(defaultHealth.failing()),
+                    "default-min-response-time", String.valueOf(defaultHealth.minResponseTime())));
+        }
+        if (fallbackHealth != null) {
+            fallbackStatus.update(fallbackHealth);
+            args.addAll(List.of("fallback-failing", String.valueOf(fallbackHealth.failing()),
+                    "fallback-min-response-time", String.valueOf(fallbackHealth.minResponseTime())));
+        }
+
+        if (args.size() > 1) {
+            redisAPI.hsetAndAwait(args);
+            log.debug("Published processor health - default: {} | fallback: {}", defaultHealth, fallbackHealth);
+        }
+    }
+
+    private ServiceHealth poll(final Processor processor) {
+        try {
+            ProcessorTransport.Reply reply = transport.serviceHealth(processor).join();
+            if (reply.statusCode() == 200) {
+                // tree model rather than data binding: nothing to register for reflection in the native image
+                JsonNode health = objectMapper.readTree(reply.body().getBytes());
+                return new ServiceHealth(health.path("failing").asBoolean(), health.path("minResponseTime").asInt());
+            }
+            log.warn("Got status code {} from {} health check", reply.statusCode(), processor.key());
+        } catch (Exception e) {
+            log.warn("Got an error at {} health check: {}", processor.key(), e.getMessage());
+        }
+        return null;
+    }
+
+    private void readShared() {
+        Response health = redisAPI.hmgetAndAwait(List.of(HEALTH_KEY,
+                "default-failing", "default-min-response-time",
+                "fallback-failing", "fallback-min-response-time"));
+
+        if (health == null || health.get(0) == null || health.get(2) == null) {
+            return;
+        }
+        defaultStatus.update(new ServiceHealth(Boolean.parseBoolean(health.get(0).toString()), health.get(1).toInteger()));
+        fallbackStatus.update(new ServiceHealth(Boolean.parseBoolean(health.get(2).toString()), health.get(3).toInteger()));
+    }
+
+    public record ServiceHealth(boolean failing, int minResponseTime) {}
+
+    private static final class ProcessorStatus {
+        private volatile boolean failing;
+        private volatile int minResponseTime;
+        private final AtomicLong observedLatency = new AtomicLong(Double.doubleToLongBits(0));
+
+        void update(final ServiceHealth health) {
+            this.failing = health.failing();
+            this.minResponseTime = health.minResponseTime();
+        }
+
+        void observe(final long latencyInMs) {
+            observedLatency.updateAndGet(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                return Double.doubleToLongBits(current + LATENCY_WEIGHT * (latencyInMs - current));
+            });
+        }
+
+        long latency() {
+            return Math.max(minResponseTime, (long) Double.longBitsToDouble(observedLatency.get()));
+        }
+    }
+}
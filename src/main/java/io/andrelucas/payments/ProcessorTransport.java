@@ -0,0 +1,100 @@
+package io.andrelucas.payments;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP transport to the payment processors on the Vert.x event loop Quarkus already runs.
+ * <p>
+ * Each processor gets its own fixed keep-alive pool of {@code payment-processor.*.pool-size}
+ * connections. Requests that find more than {@code payment-processor.*.queue-limit} others waiting
+ * for a connection fail straight away with a {@link io.vertx.core.http.ConnectionPoolTooBusyException}
+ * instead of queueing behind timeouts.
+ */
+@ApplicationScoped
+public class ProcessorTransport {
+
+    private final Endpoint defaultEndpoint;
+    private final Endpoint fallbackEndpoint;
+
+    public ProcessorTransport(final Vertx vertx,
+                              @ConfigProperty(name = "payment-processor.default.base-url") final String defaultBaseUri,
+                              @ConfigProperty(name = "payment-processor.default.pool-size") final int defaultPoolSize,
+                              @ConfigProperty(name = "payment-processor.default.queue-limit") final int defaultQueueLimit,
+                              @ConfigProperty(name = "payment-processor.fallback.base-url") final String fallbackBaseUri,
+                              @ConfigProperty(name = "payment-processor.fallback.pool-size") final int fallbackPoolSize,
+                              @ConfigProperty(name = "payment-processor.fallback.queue-limit") final int fallbackQueueLimit,
+                              @ConfigProperty(name = "payment-processor.timeout-in-ms") final long timeoutInMs) {
+
+        this.defaultEndpoint = new Endpoint(vertx, URI.create(defaultBaseUri), defaultPoolSize, defaultQueueLimit, timeoutInMs);
+        this.fallbackEndpoint = new Endpoint(vertx, URI.create(fallbackBaseUri), fallbackPoolSize, fallbackQueueLimit, timeoutInMs);
+    }
+
+    public CompletableFuture<Reply> postPayment(final Processor processor, final Buffer payload) {
+        Endpoint endpoint = endpointOf(processor);
+        return send(endpoint.client, endpoint.payments, payload);
+    }
+
+    public CompletableFuture<Reply> serviceHealth(final Processor processor) {
+        Endpoint endpoint = endpointOf(processor);
+        return send(endpoint.client, endpoint.serviceHealth, null);
+    }
+
+    private Endpoint endpointOf(final Processor processor) {
+        return processor == Processor.DEFAULT ? defaultEndpoint : fallbackEndpoint;
+    }
+
+    private static CompletableFuture<Reply> send(final HttpClient client, final RequestOptions options, final Buffer payload) {
+        return client.request(options)
+                .compose(request -> payload == null ? request.send() : request.send(payload))
+                .compose(response -> response.body().map(body -> new Reply(response.statusCode(), body)))
+                .toCompletionStage()
+                .toCompletableFuture();
+    }
+
+    public record Reply(int statusCode, Buffer body) {}
+
+    private static final class Endpoint {
+        private final HttpClient client;
+        private final RequestOptions payments;
+        private final RequestOptions serviceHealth;
+
+        Endpoint(final Vertx vertx, final URI baseUri, final int poolSize, final int queueLimit, final long timeoutInMs) {
+            int port = baseUri.getPort() != -1 ? baseUri.getPort() : 80;
+            this.client = vertx.createHttpClient(
+                    new HttpClientOptions()
+                            .setKeepAlive(true)
+                            .setDefaultHost(baseUri.getHost())
+                            .setDefaultPort(port)
+                            .setConnectTimeout((int) timeoutInMs),
+                    new PoolOptions()
+                            .setHttp1MaxSize(poolSize)
+                            .setMaxWaitQueueSize(queueLimit));
+
+            // resolved once and reused for every call
+            this.payments = new RequestOptions()
+                    .setMethod(HttpMethod.POST)
+                    .setHost(baseUri.getHost())
+                    .setPort(port)
+                    .setURI(baseUri.getPath() + "/payments")
+                    .setIdleTimeout(timeoutInMs)
+                    .putHeader("Content-Type", "application/json");
+            this.serviceHealth = new RequestOptions()
+                    .setMethod(HttpMethod.GET)
+                    .setHost(baseUri.getHost())
+                    .setPort(port)
+                    .setURI(baseUri.getPath() + "/payments/service-health")
+                    .setIdleTimeout(timeoutInMs);
+        }
+    }
+}
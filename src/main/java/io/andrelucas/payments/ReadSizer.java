@@ -0,0 +1,92 @@
+package io.andrelucas.payments;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Picks COUNT and BLOCK for the next XREADGROUP from what the previous reads returned, the group's
+ * backlog and how fast this node completes payments.
+ * <p>
+ * While reads come back full, or the stream lags behind the group, COUNT doubles and BLOCK drops to
+ * its minimum so a burst drains quickly. An empty read resets COUNT and doubles BLOCK, so an idle
+ * consumer parks in Redis instead of spinning. COUNT never exceeds what the node completes in
+ * {@code app.consumer-batch-window-in-ms}, so one node does not hoard entries the other could take.
+ * Only the consumer thread calls {@link #onRead}; completions and backlog may come from anywhere.
+ */
+final class ReadSizer {
+    private static final double RATE_WEIGHT = 0.3;
+
+    private final int minCount;
+    private final int maxCount;
+    private final long minBlockInMs;
+    private final long maxBlockInMs;
+    private final long batchWindowInMs;
+
+    private final LongAdder completed = new LongAdder();
+    private volatile long backlog;
+
+    private int count;
+    private long blockInMs;
+    private double completionsPerMs;
+    private long lastSampleNanos;
+
+    ReadSizer(final int minCount, final int maxCount,
+              final long minBlockInMs, final long maxBlockInMs,
+              final long batchWindowInMs, final long nowNanos) {
+        this.minCount = Math.max(1, minCount);
+        this.maxCount = Math.max(this.minCount, maxCount);
+        // BLOCK 0 would wait forever
+        this.minBlockInMs = Math.max(1, minBlockInMs);
+        this.maxBlockInMs = Math.max(this.minBlockInMs, maxBlockInMs);
+        this.batchWindowInMs = batchWindowInMs;
+        this.count = this.minCount;
+        this.blockInMs = this.minBlockInMs;
+        this.lastSampleNanos = nowNanos;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long blockInMs() {
+        return blockInMs;
+    }
+
+    void completed() {
+        completed.increment();
+    }
+
+    void backlog(final long backlog) {
+        this.backlog = backlog;
+    }
+
+    void onRead(final int requested, final int received, final long nowNanos) {
+        sampleRate(nowNanos);
+
+        if (received >= requested || (received > 0 && backlog > received)) {
+            count = Math.min(maxCount, Math.max(count, received) * 2);
+            blockInMs = minBlockInMs;
+        } else if (received > 0) {
+            count = Math.max(minCount, Math.min(maxCount, received * 2));
+            blockInMs = minBlockInMs;
+        } else {
+            count = minCount;
+            blockInMs = Math.min(maxBlockInMs, blockInMs * 2);
+        }
+
+        if (completionsPerMs > 0) {
+            int completable = (int) Math.ceil(completionsPerMs * batchWindowInMs);
+            count = Math.max(minCount, Math.min(count, completable));
+        }
+    }
+
+    private void sampleRate(final long nowNanos) {
+        long elapsedInMs = TimeUnit.NANOSECONDS.toMillis(nowNanos - lastSampleNanos);
+        if (elapsedInMs < 1) {
+            return;
+        }
+        double rate = completed.sumThenReset() / (double) elapsedInMs;
+        completionsPerMs = completionsPerMs == 0 ? rate : completionsPerMs + RATE_WEIGHT * (rate - completionsPerMs);
+        lastSampleNanos = nowNanos;
+    }
+}
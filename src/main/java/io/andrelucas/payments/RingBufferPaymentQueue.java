@@ -0,0 +1,114 @@
+package io.andrelucas.payments;
+
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.quarkus.virtual.threads.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process engine: payments go into a bounded {@link MpscRingBuffer} and a single drainer hands
+ * them to the {@link PaymentDispatcher} as permits free up, skipping the Redis round trips and the
+ * stream poll. Payments that are queued here are lost if the node dies. Each payment claims its
+ * correlationId marker right before being dispatched, so duplicates are dropped there. With the ring
+ * empty the drainer parks until the next offer unparks it.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "app.queue-engine", stringValue = PaymentQueue.RING_BUFFER_ENGINE)
+public class RingBufferPaymentQueue implements PaymentQueue {
+    private static final Logger log = LoggerFactory.getLogger(RingBufferPaymentQueue.class);
+
+    private final PaymentDispatcher dispatcher;
+    private final PaymentDeduplicator deduplicator;
+    private final Executor executor;
+    private final MpscRingBuffer<PaymentClient.PaymentClientRequest> ring;
+    private final int drainSize;
+    private volatile Thread drainer;
+    private volatile boolean idle;
+
+    public RingBufferPaymentQueue(final PaymentDispatcher dispatcher,
+                                  final PaymentDeduplicator deduplicator,
+                                  @VirtualThreads final Executor executor,
+                                  @ConfigProperty(name = "app.ring-buffer-capacity") final int capacity,
+                                  @ConfigProperty(name = "app.consumer-count") final int drainSize) {
+        this.dispatcher = dispatcher;
+        this.deduplicator = deduplicator;
+        this.executor = executor;
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.drainSize = drainSize;
+    }
+
+    @PostConstruct
+    void init() {
+        log.info("Using in-process ring buffer payment queue with {} slots", ring.capacity());
+        executor.execute(this::drainLoop);
+    }
+
+    @Override
+    public boolean enqueue(final UUID correlationId, final long amountInCents) {
+        PaymentClient.PaymentClientRequest request = new PaymentClient.PaymentClientRequest(
+                correlationId.toString(), amountInCents, System.currentTimeMillis());
+
+        if (!ring.offer(request)) {
+            log.warn("Ring buffer full, rejecting payment {}", correlationId);
+            return false;
+        }
+        if (idle) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    private void drainLoop() {
+        drainer = Thread.currentThread();
+        while (!Thread.currentThread().isInterrupted()) {
+            int permits = 0;
+            try {
+                permits = dispatcher.acquire(drainSize);
+                while (permits > 0) {
+                    PaymentClient.PaymentClientRequest request = ring.poll();
+                    if (request == null) {
+                        break;
+                    }
+                    permits--;
+                    deduplicator.claim(request.correlationId())
+                            .exceptionally(err -> true)
+                            .thenCompose(claimed -> {
+                                if (claimed) {
+                                    return dispatcher.dispatch(request, 0);
+                                }
+                                log.debug("Dropping duplicate payment {}", request.correlationId());
+                                dispatcher.release(1);
+                                return CompletableFuture.completedFuture(false);
+                            })
+                            .exceptionally(err -> {
+                                log.error("Payment {} could not be processed nor scheduled for retry", request.correlationId(), err);
+                                return null;
+                            });
+                }
+                dispatcher.release(permits);
+                if (permits > 0) {
+                    awaitPayments();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void awaitPayments() {
+        idle = true;
+        // a payment offered before idle was set saw no reason to unpark us
+        if (ring.isEmpty()) {
+            LockSupport.park(this);
+        }
+        idle = false;
+    }
+}
@@ -0,0 +1,120 @@
+package io.andrelucas.payments;
+
+import io.andrelucas.RedisInitializer;
+import io.andrelucas.metrics.PipelineMetrics;
+import io.quarkus.runtime.Startup;
+import io.quarkus.virtual.threads.VirtualThreads;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.redis.client.RedisAPI;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps {@code payments_stream} from growing for the whole run. Every
+ * {@code app.compactor-interval-in-ms} one node, elected through a Redis lock like the health poller
+ * in {@link ProcessorRouter}, trims with {@code XTRIM MINID} everything the consumer group has
+ * acknowledged: entries below the oldest pending one, or up to the last delivered one when nothing
+ * is pending. Undelivered entries are never touched. Every node publishes the stream's length and
+ * memory usage as metrics.
+ */
+@Startup
+@ApplicationScoped
+public class StreamCompactor {
+    private static final Logger log = LoggerFactory.getLogger(StreamCompactor.class);
+    private static final String STREAM_KEY = "payments_stream";
+    private static final String GROUP = "payments_group";
+    private static final String LOCK_KEY = "payments:compactor:lock";
+
+    private final String nodeName;
+    private final RedisAPI redisAPI;
+    private final RedisInitializer redisInitializer;
+    private final PipelineMetrics metrics;
+    private final Executor executor;
+    private final boolean enabled;
+    private final long intervalInMs;
+
+    public StreamCompactor(@ConfigProperty(name = "app.consumer-name") final String nodeName,
+                           @ConfigProperty(name = "app.queue-engine") final String queueEngine,
+                           @ConfigProperty(name = "app.compactor-interval-in-ms") final long intervalInMs,
+                           final RedisAPI redisAPI,
+                           final RedisInitializer redisInitializer,
+                           final PipelineMetrics metrics,
+                           @VirtualThreads final Executor executor) {
+        this.nodeName = nodeName;
+        this.redisAPI = redisAPI;
+        this.redisInitializer = redisInitializer;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.enabled = PaymentQueue.REDIS_ENGINE.equals(queueEngine);
+        this.intervalInMs = intervalInMs;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        redisInitializer.ready().thenRun(() -> Multi.createFrom().ticks().every(Duration.ofMillis(intervalInMs))
+                .onOverflow().drop()
+                .subscribe()
+                .with(tick -> executor.execute(this::compact),
+                        err -> log.error("Stream compaction stopped", err)));
+    }
+
+    private void compact() {
+        try {
+            long memory = memoryUsage();
+            Response lock = redisAPI.setAndAwait(List.of(LOCK_KEY, nodeName, "NX", "PX", String.valueOf(intervalInMs)));
+            if (lock != null) {
+                String minId = minAcknowledgedId();
+                if (minId != null) {
+                    long trimmed = redisAPI.xtrimAndAwait(List.of(STREAM_KEY, "MINID", "~", minId)).toLong();
+                    if (trimmed > 0) {
+                        long after = memoryUsage();
+                        metrics.streamTrimmed(trimmed, memory - after);
+                        memory = after;
+                        log.debug("Trimmed {} entries below {} from {}", trimmed, minId, STREAM_KEY);
+                    }
+                }
+            }
+            metrics.stream(redisAPI.xlenAndAwait(STREAM_KEY).toLong(), memory);
+        } catch (Exception e) {
+            log.warn("Error while compacting {}: {}", STREAM_KEY, e.getMessage());
+        }
+    }
+
+    /**
+     * Smallest id that may still be needed: the oldest pending entry, or the one right after the last
+     * delivered entry. {@code null} when the group has not delivered anything yet. The last delivered
+     * id is read first, so entries delivered in between are above it and never trimmed.
+     */
+    private String minAcknowledgedId() {
+        String lastDelivered = null;
+        for (Response group : redisAPI.xinfoAndAwait(List.of("GROUPS", STREAM_KEY))) {
+            if (GROUP.equals(String.valueOf(StreamInfo.field(group, "name")))) {
+                lastDelivered = String.valueOf(StreamInfo.field(group, "last-delivered-id"));
+            }
+        }
+        if (lastDelivered == null || "0-0".equals(lastDelivered)) {
+            return null;
+        }
+        Response pending = redisAPI.xpendingAndAwait(List.of(STREAM_KEY, GROUP));
+        if (pending != null && pending.get(0).toLong() > 0) {
+            return pending.get(1).toString();
+        }
+        return StreamInfo.next(lastDelivered);
+    }
+
+    private long memoryUsage() {
+        Response usage = redisAPI.memoryAndAwait(List.of("USAGE", STREAM_KEY));
+        return usage == null ? 0 : usage.toLong();
+    }
+}
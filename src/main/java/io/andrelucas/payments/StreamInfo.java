@@ -0,0 +1,37 @@
+package io.andrelucas.payments;
+
+import io.vertx.mutiny.redis.client.Response;
+
+/**
+ * Reads fields out of XINFO replies, which are maps on RESP3 and flat key/value arrays on RESP2.
+ */
+final class StreamInfo {
+
+    private StreamInfo() {
+    }
+
+    static Response field(final Response info, final String name) {
+        if (info.isMap()) {
+            return info.get(name);
+        }
+        for (int i = 0; i + 1 < info.size(); i += 2) {
+            if (name.equals(info.get(i).toString())) {
+                return info.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    static long toLong(final Response value) {
+        // lag is nil when Redis cannot tell, e.g. right after entries were deleted
+        return value == null ? 0 : value.toLong();
+    }
+
+    /**
+     * The smallest entry id greater than {@code id}, so {@code XTRIM MINID} keeps nothing up to {@code id}.
+     */
+    static String next(final String id) {
+        int dash = id.indexOf('-');
+        return id.substring(0, dash + 1) + (Long.parseLong(id.substring(dash + 1)) + 1);
+    }
+}
@@ -1,84 +1,119 @@
 package io.andrelucas.summary;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.andrelucas.metrics.PipelineMetrics;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
 import io.vertx.mutiny.redis.client.RedisAPI;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @ApplicationScoped
 public class GetSummary {
     private static final Logger log = LoggerFactory.getLogger(GetSummary.class);
+    private static final String[] PROCESSORS = {"default", "fallback"};
+
     private final RedisAPI redisAPI;
-    private final ObjectMapper objectMapper;
+    private final Redis redis;
+    private final PipelineMetrics metrics;
+    private final long bucketSizeInMs;
 
     public GetSummary(final RedisAPI redisAPI,
-                      final ObjectMapper objectMapper) {
+                      final Redis redis,
+                      final PipelineMetrics metrics,
+                      @ConfigProperty(name = "app.summary-bucket-in-ms") final long bucketSizeInMs) {
 
         this.redisAPI = redisAPI;
-        this.objectMapper = objectMapper;
+        this.redis = redis;
+        this.metrics = metrics;
+        this.bucketSizeInMs = bucketSizeInMs;
     }
 
     public CompletableFuture<PaymentSummaryResponse> summary(Instant from, Instant to) {
+        long start = System.nanoTime();
         long fromTimestamp = from != null ? from.toEpochMilli() : 0;
         long toTimestamp = to != null ? to.toEpochMilli() : Instant.now().toEpochMilli();
 
-        return redisAPI.zrangebyscore(List.of("payments:timeline", String.valueOf(fromTimestamp), String.valueOf(toTimestamp)))
-                .onItem()
-                .transform(response -> fromJson(response.toString()))
+        // whole buckets come from the aggregates, only the partial buckets at the edges hit the timeline
+        long firstBucket = Math.floorDiv(fromTimestamp + bucketSizeInMs - 1, bucketSizeInMs);
+        long lastBucket = Math.floorDiv(toTimestamp + 1, bucketSizeInMs) - 1;
+
+        Uni<SummaryTotals> totals;
+        if (firstBucket > lastBucket) {
+            totals = scan(fromTimestamp, toTimestamp);
+        } else {
+            long bucketsStart = firstBucket * bucketSizeInMs;
+            long bucketsEnd = (lastBucket + 1) * bucketSizeInMs;
+
+            Uni<SummaryTotals> head = fromTimestamp < bucketsStart ? scan(fromTimestamp, bucketsStart - 1) : empty();
+            Uni<SummaryTotals> tail = bucketsEnd <= toTimestamp ? scan(bucketsEnd, toTimestamp) : empty();
+
+            totals = Uni.combine().all().unis(head, buckets(firstBucket, lastBucket), tail)
+                    .with((h, b, t) -> h.merge(b).merge(t));
+        }
+
+        return totals
                 .onItem()
-                .transform(this::convertToResponse)
+                .transform(SummaryTotals::toResponse)
                 .onFailure()
                 .invoke(e -> log.error("Error while fetching payments from redis", e))
+                .onTermination()
+                .invoke(() -> metrics.summary(System.nanoTime() - start))
                 .subscribe().asCompletionStage();
 
     }
 
-    private List<PaymentSummaryData> fromJson(final String responseJson) {
-        try {
-            return objectMapper.readValue(responseJson,
-                    new TypeReference<List<PaymentSummaryData>>() {});
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
-
+    private static Uni<SummaryTotals> empty() {
+        return Uni.createFrom().item(SummaryTotals::new);
     }
 
-    private PaymentSummaryResponse convertToResponse(List<PaymentSummaryData> paymentSummaryData) {
-
-        List<PaymentSummaryData> defaultData = paymentSummaryData.stream()
-                .filter(data -> "default".equals(data.processor()))
-                .toList();
-
-        double defaultTotalValue = defaultData.stream()
-                .map(PaymentSummaryData::amount)
-                .map(BigDecimal::doubleValue)
-                .mapToDouble(Double::doubleValue)
-                .sum();
-
-        PaymentSummaryResponse.IntegrationSummary defaultSummary = new PaymentSummaryResponse.IntegrationSummary(defaultData.size(), defaultTotalValue);
-
-
-        List<PaymentSummaryData> fallbackData = paymentSummaryData.stream()
-                .filter(data -> "fallback".equals(data.processor()))
-                .toList();
-
-        double fallbackTotalValue = fallbackData.stream()
-                .map(PaymentSummaryData::amount)
-                .map(BigDecimal::doubleValue)
-                .mapToDouble(Double::doubleValue)
-                .sum();
+    private Uni<SummaryTotals> scan(final long fromTimestamp, final long toTimestamp) {
+        return redisAPI.zrangebyscore(List.of(PaymentBuckets.TIMELINE_KEY, String.valueOf(fromTimestamp), String.valueOf(toTimestamp)))
+                .onItem()
+                .transform(response -> TimelineDecoder.decode(response.getDelegate(), new SummaryTotals()));
+    }
 
+    private Uni<SummaryTotals> buckets(final long firstBucket, final long lastBucket) {
+        return redisAPI.zrangebyscore(List.of(PaymentBuckets.BUCKET_INDEX_KEY, String.valueOf(firstBucket), String.valueOf(lastBucket)))
+                .onItem()
+                .transformToUni(bucketIds -> {
+                    if (bucketIds == null || bucketIds.size() == 0) {
+                        return empty();
+                    }
+
+                    List<Request> requests = new ArrayList<>(bucketIds.size());
+                    for (Response bucketId : bucketIds) {
+                        Request hmget = Request.cmd(Command.HMGET).arg(PaymentBuckets.bucketKey(bucketId.toLong()));
+                        for (String processor : PROCESSORS) {
+                            hmget.arg(PaymentBuckets.countField(processor)).arg(PaymentBuckets.centsField(processor));
+                        }
+                        requests.add(hmget);
+                    }
+
+                    return redis.batch(requests).onItem().transform(this::sumBuckets);
+                });
+    }
 
-        PaymentSummaryResponse.IntegrationSummary fallbackSummary = new PaymentSummaryResponse.IntegrationSummary(fallbackData.size(), fallbackTotalValue);
+    private SummaryTotals sumBuckets(final List<Response> buckets) {
+        SummaryTotals totals = new SummaryTotals();
+        for (Response bucket : buckets) {
+            for (int i = 0; i < PROCESSORS.length; i++) {
+                totals.add(PROCESSORS[i], toLong(bucket.get(i * 2)), toLong(bucket.get(i * 2 + 1)));
+            }
+        }
+        return totals;
+    }
 
-        return new PaymentSummaryResponse(defaultSummary, fallbackSummary);
+    private static long toLong(final Response value) {
+        return value == null ? 0 : value.toLong();
     }
 }
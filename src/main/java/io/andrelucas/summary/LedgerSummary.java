@@ -0,0 +1,93 @@
+package io.andrelucas.summary;
+
+import io.andrelucas.metrics.PipelineMetrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Summary built from the node-local {@link PaymentLedger}s: this node's own plus the partial
+ * aggregates of every peer in {@code app.summary-peers}, fetched in parallel and merged.
+ * A peer that does not answer fails the whole summary rather than under-reporting.
+ */
+@ApplicationScoped
+public class LedgerSummary {
+    private static final Logger log = LoggerFactory.getLogger(LedgerSummary.class);
+
+    private final PaymentLedger paymentLedger;
+    private final PipelineMetrics metrics;
+    private final HttpClient httpClient;
+    private final List<URI> peers;
+    private final long timeoutInMs;
+
+    public LedgerSummary(final PaymentLedger paymentLedger,
+                         final PipelineMetrics metrics,
+                         final Vertx vertx,
+                         @ConfigProperty(name = "app.summary-peers") final Optional<List<String>> peers,
+                         @ConfigProperty(name = "app.summary-peer-timeout-in-ms") final long timeoutInMs) {
+        this.paymentLedger = paymentLedger;
+        this.metrics = metrics;
+        this.peers = peers.orElse(List.of()).stream().map(URI::create).toList();
+        this.timeoutInMs = timeoutInMs;
+        this.httpClient = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true),
+                new PoolOptions().setHttp1MaxSize(Math.max(1, this.peers.size()) * 2));
+    }
+
+    public CompletableFuture<PaymentSummaryResponse> summary(final Instant from, final Instant to) {
+        long start = System.nanoTime();
+        long fromTimestamp = from != null ? from.toEpochMilli() : 0;
+        long toTimestamp = to != null ? to.toEpochMilli() : Instant.now().toEpochMilli();
+
+        List<CompletableFuture<PartialSummary>> partials = peers.stream()
+                .map(peer -> fetch(peer, fromTimestamp, toTimestamp))
+                .toList();
+        SummaryTotals totals = paymentLedger.summarize(fromTimestamp, toTimestamp);
+
+        return CompletableFuture.allOf(partials.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    partials.forEach(partial -> totals.merge(SummaryTotals.from(partial.join())));
+                    return totals.toResponse();
+                })
+                .whenComplete((response, err) -> metrics.summary(System.nanoTime() - start));
+    }
+
+    private CompletableFuture<PartialSummary> fetch(final URI peer, final long fromTimestamp, final long toTimestamp) {
+        RequestOptions options = new RequestOptions()
+                .setMethod(HttpMethod.GET)
+                .setHost(peer.getHost())
+                .setPort(peer.getPort() != -1 ? peer.getPort() : 80)
+                .setURI("/internal/payments-summary?from=" + fromTimestamp + "&to=" + toTimestamp)
+                .setIdleTimeout(timeoutInMs);
+
+        return httpClient.request(options)
+                .compose(request -> request.send())
+                .compose(response -> response.body().map(body -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Peer " + peer + " answered " + response.statusCode());
+                    }
+                    try {
+                        return SummaryJson.readPartial(body.getBytes());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }))
+                .onFailure(e -> log.error("Error while fetching partial summary from {}", peer, e))
+                .toCompletionStage()
+                .toCompletableFuture();
+    }
+}
@@ -0,0 +1,7 @@
+package io.andrelucas.summary;
+
+/**
+ * One node's share of a summary, exchanged between peers in exact cents.
+ */
+public record PartialSummary(long defaultRequests, long defaultCents, long fallbackRequests, long fallbackCents) {
+}
@@ -0,0 +1,45 @@
+package io.andrelucas.summary;
+
+/**
+ * Redis layout shared by the write path and {@link GetSummary}.
+ * <p>
+ * Every recorded payment lands in {@code payments:timeline} (scored by requestedAt) and is also
+ * counted in the hash of the time bucket it falls into. {@code payments:buckets} indexes the
+ * buckets that hold data, so a summary only touches the buckets inside its range.
+ * <p>
+ * Timeline members are binary: the 16-byte correlationId UUID, the amount in cents as an unsigned
+ * LEB128 varint and a 1-byte processor tag. The requestedAt timestamp lives only in the score.
+ * <p>
+ * {@code payments:watermark} is incremented after every recorded payment, so a summary computed
+ * at one watermark is still valid as long as the counter has not moved.
+ */
+public final class PaymentBuckets {
+    public static final String TIMELINE_KEY = "payments:timeline";
+    public static final String BUCKET_INDEX_KEY = "payments:buckets";
+    public static final String WATERMARK_KEY = "payments:watermark";
+
+    public static final int UUID_BYTES = 16;
+    public static final byte DEFAULT_TAG = 'd';
+    public static final byte FALLBACK_TAG = 'f';
+
+    private static final String BUCKET_KEY_PREFIX = "payments:bucket:";
+
+    private PaymentBuckets() {
+    }
+
+    public static long bucketOf(final long timestamp, final long bucketSizeInMs) {
+        return Math.floorDiv(timestamp, bucketSizeInMs);
+    }
+
+    public static String bucketKey(final long bucket) {
+        return BUCKET_KEY_PREFIX + bucket;
+    }
+
+    public static String countField(final String processor) {
+        return processor + ":count";
+    }
+
+    public static String centsField(final String processor) {
+        return processor + ":cents";
+    }
+}
@@ -0,0 +1,390 @@
+package io.andrelucas.summary;
+
+import io.quarkus.runtime.Startup;
+import io.quarkus.virtual.threads.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Keeps this node's {@link PaymentLedger} across restarts without going back to Redis.
+ * <p>
+ * Each recorded payment is appended as a fixed-size record to a memory-mapped segment under
+ * {@code app.journal-dir}, so appending is a handful of stores. The last field of a record is a
+ * checksum of the others, which makes a record torn by a crash, or never written, read as the end of
+ * the segment. Everything else runs on a background thread every {@code app.journal-sync-interval-in-ms}:
+ * forcing the current segment to disk (group commit), mapping the next segment ahead of time, so a
+ * full segment is only swapped for it, and appending the rows of full segments to the compact ledger
+ * snapshot, after which they are deleted. The snapshot's header, with the row count and the first
+ * segment it does not cover, is only patched once the appended rows are on disk, so rows past the
+ * count are ignored. Startup loads the snapshot and replays the segments after it.
+ * Without {@code app.journal-dir}, payments only go to the ledger.
+ */
+@Startup
+@ApplicationScoped
+public class PaymentJournal {
+    private static final Logger log = LoggerFactory.getLogger(PaymentJournal.class);
+
+    // requestedAt, cents, correlationId msb and lsb, processor, 3 padding bytes, checksum
+    static final int RECORD_BYTES = 40;
+    private static final int SNAPSHOT_ROW_BYTES = 17;
+    private static final int SNAPSHOT_HEADER_BYTES = 20;
+    private static final long SNAPSHOT_MAGIC = 0x5041594c45444752L;
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final int FOLD_BUFFER_ROWS = 4096;
+
+    private static final byte DEFAULT = 'd';
+    private static final byte FALLBACK = 'f';
+
+    private final PaymentLedger ledger;
+    private final Executor executor;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long syncIntervalInNanos;
+
+    // written with the monitor held, read by the syncer
+    private volatile MappedByteBuffer segment;
+    private volatile long segmentSequence;
+    private volatile boolean journaling;
+    private int position;
+
+    private volatile Segment next;
+    private final ConcurrentLinkedQueue<Segment> full = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Segment> unsnapshotted = new ArrayDeque<>();
+    private final Object maintenance = new Object();
+    // guarded by maintenance
+    private final ByteBuffer foldBuffer = ByteBuffer.allocate(FOLD_BUFFER_ROWS * SNAPSHOT_ROW_BYTES);
+    private FileChannel snapshot;
+    private int snapshotRows;
+    private volatile boolean dirty;
+    private volatile Thread syncer;
+
+    public PaymentJournal(final PaymentLedger ledger,
+                          @VirtualThreads final Executor executor,
+                          @ConfigProperty(name = "app.journal-dir") final Optional<String> directory,
+                          @ConfigProperty(name = "app.journal-segment-bytes") final int segmentBytes,
+                          @ConfigProperty(name = "app.journal-sync-interval-in-ms") final long syncIntervalInMs) {
+        this.ledger = ledger;
+        this.executor = executor;
+        this.directory = directory.map(Path::of).orElse(null);
+        this.segmentBytes = Math.max(1, segmentBytes / RECORD_BYTES) * RECORD_BYTES;
+        this.syncIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalInMs);
+    }
+
+    @PostConstruct
+    void init() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Files.createDirectories(directory);
+            long snapshotSequence = loadSnapshot();
+            int replayed = 0;
+            for (long sequence : segmentSequences()) {
+                if (sequence < snapshotSequence) {
+                    continue;
+                }
+                if (segment != null) {
+                    // not the last one: still to be folded into the snapshot
+                    full.offer(new Segment(segmentSequence, segment, position));
+                }
+                segment = map(sequence);
+                segmentSequence = sequence;
+                replayed += replay();
+            }
+            if (segment == null) {
+                segment = map(snapshotSequence);
+                segmentSequence = snapshotSequence;
+                position = 0;
+            }
+            journaling = true;
+            executor.execute(this::syncLoop);
+            log.info("Journal at {} restored {} ledger rows, {} from segments, in {}ms", directory,
+                    ledger.size(), replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not open the journal at {}, payments will only be kept in memory", directory, e);
+        }
+    }
+
+    /**
+     * Stops appending, then forces the current segment and folds the full ones into the snapshot.
+     */
+    @PreDestroy
+    void close() {
+        synchronized (this) {
+            if (!journaling) {
+                return;
+            }
+            journaling = false;
+        }
+        LockSupport.unpark(syncer);
+        maintain();
+        synchronized (maintenance) {
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                log.warn("Could not close the ledger snapshot: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records the payment in the ledger and, when journaling, appends it to the journal first.
+     */
+    public void record(final long requestedAt, final boolean defaultProcessor, final long amountInCents,
+                       final String correlationId) {
+        synchronized (this) {
+            if (journaling) {
+                append(requestedAt, defaultProcessor, amountInCents, correlationId);
+            }
+            ledger.record(requestedAt, defaultProcessor, amountInCents);
+        }
+    }
+
+    private void append(final long requestedAt, final boolean defaultProcessor, final long amountInCents,
+                        final String correlationId) {
+        try {
+            if (position + RECORD_BYTES > segmentBytes) {
+                roll();
+            }
+            UUID id = UUID.fromString(correlationId);
+            write(segment, position, requestedAt, amountInCents, id.getMostSignificantBits(),
+                    id.getLeastSignificantBits(), defaultProcessor ? DEFAULT : FALLBACK);
+            position += RECORD_BYTES;
+            dirty = true;
+        } catch (IOException | RuntimeException e) {
+            journaling = false;
+            log.error("Journal append failed, payments will only be kept in memory from now on", e);
+        }
+    }
+
+    /**
+     * Swaps the full segment for the one the syncer mapped ahead; called with the monitor held.
+     */
+    private void roll() throws IOException {
+        Segment prepared = next;
+        MappedByteBuffer buffer;
+        if (prepared != null && prepared.sequence() == segmentSequence + 1) {
+            buffer = prepared.buffer();
+        } else {
+            // only when segments fill up faster than the syncer runs
+            buffer = map(segmentSequence + 1);
+        }
+        next = null;
+        full.offer(new Segment(segmentSequence, segment, position));
+        segment = buffer;
+        segmentSequence++;
+        position = 0;
+        LockSupport.unpark(syncer);
+    }
+
+    static void write(final ByteBuffer buffer, final int at, final long requestedAt, final long cents,
+                      final long msb, final long lsb, final byte processor) {
+        buffer.putLong(at, requestedAt);
+        buffer.putLong(at + 8, cents);
+        buffer.putLong(at + 16, msb);
+        buffer.putLong(at + 24, lsb);
+        buffer.put(at + 32, processor);
+        buffer.putInt(at + 36, checksum(requestedAt, cents, msb, lsb, processor));
+    }
+
+    /** Never zero, so the unwritten, zeroed tail of a segment never passes as a record. */
+    static int checksum(final long requestedAt, final long cents, final long msb, final long lsb, final byte processor) {
+        long h = requestedAt * 0x9E3779B97F4A7C15L;
+        h = (h ^ cents) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ msb) * 0x94D049BB133111EBL;
+        h = (h ^ lsb) * 0x9E3779B97F4A7C15L;
+        h = (h ^ processor) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32)) | 1;
+    }
+
+    /** Replays the current segment into the ledger and leaves {@link #position} after its last valid record. */
+    private int replay() {
+        int records = 0;
+        position = 0;
+        while (position + RECORD_BYTES <= segmentBytes) {
+            long requestedAt = segment.getLong(position);
+            long cents = segment.getLong(position + 8);
+            long msb = segment.getLong(position + 16);
+            long lsb = segment.getLong(position + 24);
+            byte processor = segment.get(position + 32);
+            if (segment.getInt(position + 36) != checksum(requestedAt, cents, msb, lsb, processor)) {
+                break;
+            }
+            ledger.record(requestedAt, processor == DEFAULT, cents);
+            position += RECORD_BYTES;
+            records++;
+        }
+        return records;
+    }
+
+    private void syncLoop() {
+        syncer = Thread.currentThread();
+        while (journaling) {
+            LockSupport.parkNanos(syncIntervalInNanos);
+            maintain();
+        }
+    }
+
+    private void maintain() {
+        synchronized (maintenance) {
+            try {
+                if (dirty) {
+                    dirty = false;
+                    segment.force();
+                }
+                Segment segmentToFold;
+                while ((segmentToFold = full.poll()) != null) {
+                    unsnapshotted.add(segmentToFold);
+                }
+                // in order: the snapshot must cover a prefix of the segments
+                while ((segmentToFold = unsnapshotted.peek()) != null) {
+                    segmentToFold.buffer().force();
+                    fold(segmentToFold);
+                    unsnapshotted.poll();
+                }
+                long sequence = segmentSequence;
+                Segment prepared = next;
+                if (journaling && (prepared == null || prepared.sequence() <= sequence)) {
+                    next = new Segment(sequence + 1, map(sequence + 1), 0);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Journal maintenance failed, full segments are kept until it succeeds", e);
+            }
+        }
+    }
+
+    /**
+     * Appends the rows of {@code full} to the snapshot, then moves the header past them and deletes
+     * the segments it now covers.
+     */
+    private void fold(final Segment full) throws IOException {
+        MappedByteBuffer buffer = full.buffer();
+        long at = SNAPSHOT_HEADER_BYTES + (long) snapshotRows * SNAPSHOT_ROW_BYTES;
+        for (int record = 0; record < full.length(); record += RECORD_BYTES) {
+            foldBuffer.putLong(buffer.getLong(record)).putLong(buffer.getLong(record + 8)).put(buffer.get(record + 32));
+            if (!foldBuffer.hasRemaining()) {
+                at += write(foldBuffer, at);
+            }
+        }
+        write(foldBuffer, at);
+        snapshot.force(false);
+
+        int rows = snapshotRows + full.length() / RECORD_BYTES;
+        write(ByteBuffer.allocate(12).putLong(full.sequence() + 1).putInt(rows), 8);
+        snapshot.force(false);
+        snapshotRows = rows;
+
+        for (long old : segmentSequences()) {
+            if (old <= full.sequence()) {
+                Files.deleteIfExists(segmentPath(old));
+            }
+        }
+        log.debug("Folded journal segment {} into the ledger snapshot", full.sequence());
+    }
+
+    /** Writes what was put into {@code buffer} at {@code at} and clears it; returns the bytes written. */
+    private int write(final ByteBuffer buffer, final long at) throws IOException {
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            snapshot.write(buffer, at + bytes - buffer.remaining());
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    /** Fills {@code buffer} from {@code at}, which the caller made sure is within the file, and flips it. */
+    private ByteBuffer read(final ByteBuffer buffer, final long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            snapshot.read(buffer, at + buffer.position());
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Opens the snapshot, creating an empty one if needed, and loads its rows into the ledger.
+     *
+     * @return the first segment the snapshot does not cover
+     */
+    private long loadSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        snapshot = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (snapshot.size() == 0) {
+            write(ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES).putLong(SNAPSHOT_MAGIC).putLong(0).putInt(0), 0);
+            snapshot.force(true);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+        if (snapshot.size() < SNAPSHOT_HEADER_BYTES || read(header, 0).getLong() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a ledger snapshot: " + path);
+        }
+        long sequence = header.getLong();
+        int rows = header.getInt();
+        if (snapshot.size() < SNAPSHOT_HEADER_BYTES + (long) rows * SNAPSHOT_ROW_BYTES) {
+            throw new IOException("Truncated ledger snapshot: " + path);
+        }
+
+        long at = SNAPSHOT_HEADER_BYTES;
+        for (int row = 0; row < rows; ) {
+            foldBuffer.clear().limit(Math.min(FOLD_BUFFER_ROWS, rows - row) * SNAPSHOT_ROW_BYTES);
+            read(foldBuffer, at);
+            while (foldBuffer.hasRemaining()) {
+                long requestedAt = foldBuffer.getLong();
+                long cents = foldBuffer.getLong();
+                ledger.record(requestedAt, foldBuffer.get() == DEFAULT, cents);
+                row++;
+            }
+            at += foldBuffer.limit();
+        }
+        foldBuffer.clear();
+        snapshotRows = rows;
+        return sequence;
+    }
+
+    private MappedByteBuffer map(final long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private List<Long> segmentSequences() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(final long sequence) {
+        return directory.resolve(String.format("%016d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    /** A mapped segment and the bytes of it holding records. */
+    private record Segment(long sequence, MappedByteBuffer buffer, int length) {}
+}
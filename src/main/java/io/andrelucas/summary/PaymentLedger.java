@@ -0,0 +1,320 @@
+package io.andrelucas.summary;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Payments this node got accepted by a processor, kept as a columnar timeline sorted by requestedAt.
+ * <p>
+ * Rows live in chunks of primitive columns, so growing never copies more than the chunk directory and
+ * the last chunk, which starts small and doubles up to its full size. Each row also carries the running
+ * totals up to and including itself, which turns a range summary into two binary searches and a
+ * subtraction. Late rows go to a small sorted side chunk with running totals of its own, so they never
+ * rewrite the timeline's; once it is full, it is merged into the timeline in one pass, shifting the rows
+ * after each late one with a copy per chunk.
+ */
+@ApplicationScoped
+public class PaymentLedger {
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNK_CAPACITY = 1 << 10;
+    private static final int LATE_CAPACITY = 1 << 10;
+
+    private static final byte DEFAULT = 0;
+    private static final byte FALLBACK = 1;
+
+    private final StampedLock lock = new StampedLock();
+    private Chunk[] chunks = new Chunk[16];
+    private int size;
+    private Chunk late;
+    private int lateSize;
+
+    public void record(final long requestedAt, final boolean defaultProcessor, final long amountInCents) {
+        byte processor = defaultProcessor ? DEFAULT : FALLBACK;
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0 || requestedAtOf(size - 1) <= requestedAt) {
+                ensureCapacity(size + 1);
+                chunks[size >>> CHUNK_SHIFT].set(size & CHUNK_MASK, requestedAt, amountInCents, processor);
+                size++;
+                accumulate(size - 1);
+            } else {
+                recordLate(requestedAt, amountInCents, processor);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    SummaryTotals summarize(final long fromTimestamp, final long toTimestamp) {
+        SummaryTotals totals = new SummaryTotals();
+        long stamp = lock.readLock();
+        try {
+            long count = 0;
+            long defaultCount = 0;
+            long defaultCents = 0;
+            long fallbackCents = 0;
+
+            int from = lowerBound(fromTimestamp);
+            int to = upperBound(toTimestamp, size);
+            if (to > from) {
+                count += to - from;
+                defaultCount += runningDefaultCount(to - 1) - (from > 0 ? runningDefaultCount(from - 1) : 0);
+                defaultCents += runningDefaultCents(to - 1) - (from > 0 ? runningDefaultCents(from - 1) : 0);
+                fallbackCents += runningFallbackCents(to - 1) - (from > 0 ? runningFallbackCents(from - 1) : 0);
+            }
+
+            from = lateSize == 0 ? 0 : late.lowerBound(fromTimestamp, lateSize);
+            to = lateSize == 0 ? 0 : late.upperBound(toTimestamp, lateSize);
+            if (to > from) {
+                count += to - from;
+                defaultCount += late.runningDefaultCount[to - 1] - (from > 0 ? late.runningDefaultCount[from - 1] : 0);
+                defaultCents += late.runningDefaultCents[to - 1] - (from > 0 ? late.runningDefaultCents[from - 1] : 0);
+                fallbackCents += late.runningFallbackCents[to - 1] - (from > 0 ? late.runningFallbackCents[from - 1] : 0);
+            }
+
+            totals.add("default", defaultCount, defaultCents);
+            totals.add("fallback", count - defaultCount, fallbackCents);
+            return totals;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + lateSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void recordLate(final long requestedAt, final long amountInCents, final byte processor) {
+        if (late == null) {
+            late = new Chunk(LATE_CAPACITY);
+        }
+        int index = late.upperBound(requestedAt, lateSize);
+        late.copy(index, late, index + 1, lateSize - index);
+        late.set(index, requestedAt, amountInCents, processor);
+        lateSize++;
+        late.accumulate(index, lateSize);
+        if (lateSize == LATE_CAPACITY) {
+            mergeLate();
+        }
+    }
+
+    /**
+     * Merges the late rows into the timeline from the back, so every timeline row moves at most once,
+     * then recomputes the running totals from the first row that moved.
+     */
+    private void mergeLate() {
+        int first = upperBound(late.requestedAt[0], size);
+        ensureCapacity(size + lateSize);
+        int end = size;
+        for (int i = lateSize - 1; i >= 0; i--) {
+            int boundary = upperBound(late.requestedAt[i], end);
+            shift(boundary, end, i + 1);
+            int row = boundary + i;
+            chunks[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, late.requestedAt[i], late.cents[i], late.processor[i]);
+            end = boundary;
+        }
+        size += lateSize;
+        lateSize = 0;
+        accumulate(first);
+    }
+
+    /** Moves rows {@code [from, to)} {@code distance} rows up, copying one chunk piece at a time. */
+    private void shift(final int from, final int to, final int distance) {
+        int end = to;
+        while (end > from) {
+            int sourceLast = end - 1;
+            int targetLast = sourceLast + distance;
+            int length = Math.min(end - from, Math.min((sourceLast & CHUNK_MASK) + 1, (targetLast & CHUNK_MASK) + 1));
+            int source = end - length;
+            int target = source + distance;
+            chunks[source >>> CHUNK_SHIFT].copy(source & CHUNK_MASK, chunks[target >>> CHUNK_SHIFT], target & CHUNK_MASK, length);
+            end = source;
+        }
+    }
+
+    /** First row with requestedAt >= timestamp. */
+    private int lowerBound(final long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (requestedAtOf(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** First row before {@code high} with requestedAt > timestamp. */
+    private int upperBound(final long timestamp, final int high) {
+        int low = 0;
+        int limit = high;
+        while (low < limit) {
+            int mid = (low + limit) >>> 1;
+            if (requestedAtOf(mid) <= timestamp) {
+                low = mid + 1;
+            } else {
+                limit = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Recomputes the running totals from {@code index} to the end of the timeline. */
+    private void accumulate(final int index) {
+        long defaultCount = index > 0 ? runningDefaultCount(index - 1) : 0;
+        long defaultCents = index > 0 ? runningDefaultCents(index - 1) : 0;
+        long fallbackCents = index > 0 ? runningFallbackCents(index - 1) : 0;
+
+        for (int row = index; row < size; row++) {
+            Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+            int offset = row & CHUNK_MASK;
+            if (chunk.processor[offset] == DEFAULT) {
+                defaultCount++;
+                defaultCents += chunk.cents[offset];
+            } else {
+                fallbackCents += chunk.cents[offset];
+            }
+            chunk.runningDefaultCount[offset] = defaultCount;
+            chunk.runningDefaultCents[offset] = defaultCents;
+            chunk.runningFallbackCents[offset] = fallbackCents;
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        int last = (capacity - 1) >>> CHUNK_SHIFT;
+        while (last >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        // chunks before the one holding the current last row are full already
+        for (int index = size >>> CHUNK_SHIFT; index <= last; index++) {
+            int rows = index < last ? CHUNK_SIZE : ((capacity - 1) & CHUNK_MASK) + 1;
+            if (chunks[index] == null) {
+                chunks[index] = new Chunk(INITIAL_CHUNK_CAPACITY);
+            }
+            chunks[index].reserve(rows);
+        }
+    }
+
+    private long requestedAtOf(final int row) {
+        return chunks[row >>> CHUNK_SHIFT].requestedAt[row & CHUNK_MASK];
+    }
+
+    private long runningDefaultCount(final int row) {
+        return chunks[row >>> CHUNK_SHIFT].runningDefaultCount[row & CHUNK_MASK];
+    }
+
+    private long runningDefaultCents(final int row) {
+        return chunks[row >>> CHUNK_SHIFT].runningDefaultCents[row & CHUNK_MASK];
+    }
+
+    private long runningFallbackCents(final int row) {
+        return chunks[row >>> CHUNK_SHIFT].runningFallbackCents[row & CHUNK_MASK];
+    }
+
+    private static final class Chunk {
+        private long[] requestedAt;
+        private long[] cents;
+        private byte[] processor;
+        private long[] runningDefaultCount;
+        private long[] runningDefaultCents;
+        private long[] runningFallbackCents;
+
+        private Chunk(final int capacity) {
+            requestedAt = new long[capacity];
+            cents = new long[capacity];
+            processor = new byte[capacity];
+            runningDefaultCount = new long[capacity];
+            runningDefaultCents = new long[capacity];
+            runningFallbackCents = new long[capacity];
+        }
+
+        /** Grows by doubling until {@code rows} fit; capacities are powers of two up to the chunk size. */
+        private void reserve(final int rows) {
+            int capacity = requestedAt.length;
+            if (capacity >= rows) {
+                return;
+            }
+            while (capacity < rows) {
+                capacity <<= 1;
+            }
+            requestedAt = Arrays.copyOf(requestedAt, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+            processor = Arrays.copyOf(processor, capacity);
+            runningDefaultCount = Arrays.copyOf(runningDefaultCount, capacity);
+            runningDefaultCents = Arrays.copyOf(runningDefaultCents, capacity);
+            runningFallbackCents = Arrays.copyOf(runningFallbackCents, capacity);
+        }
+
+        private void set(final int offset, final long requestedAt, final long cents, final byte processor) {
+            this.requestedAt[offset] = requestedAt;
+            this.cents[offset] = cents;
+            this.processor[offset] = processor;
+        }
+
+        /** Copies rows without their running totals, which the caller recomputes. */
+        private void copy(final int from, final Chunk target, final int to, final int length) {
+            System.arraycopy(requestedAt, from, target.requestedAt, to, length);
+            System.arraycopy(cents, from, target.cents, to, length);
+            System.arraycopy(processor, from, target.processor, to, length);
+        }
+
+        /** Recomputes the running totals of rows {@code [index, size)}. */
+        private void accumulate(final int index, final int size) {
+            long defaultCount = index > 0 ? runningDefaultCount[index - 1] : 0;
+            long defaultCents = index > 0 ? runningDefaultCents[index - 1] : 0;
+            long fallbackCents = index > 0 ? runningFallbackCents[index - 1] : 0;
+            for (int row = index; row < size; row++) {
+                if (processor[row] == DEFAULT) {
+                    defaultCount++;
+                    defaultCents += cents[row];
+                } else {
+                    fallbackCents += cents[row];
+                }
+                runningDefaultCount[row] = defaultCount;
+                runningDefaultCents[row] = defaultCents;
+                runningFallbackCents[row] = fallbackCents;
+            }
+        }
+
+        private int lowerBound(final long timestamp, final int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (requestedAt[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int upperBound(final long timestamp, final int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (requestedAt[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
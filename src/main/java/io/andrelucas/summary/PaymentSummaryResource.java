@@ -4,8 +4,10 @@ package io.andrelucas.summary;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.resteasy.reactive.RestResponse;
 
 import java.time.Instant;
@@ -14,19 +16,35 @@ import java.util.concurrent.CompletableFuture;
 @Path("/payments-summary")
 public class PaymentSummaryResource {
 
-    private final GetSummary getSummary;
+    static final String REDIS_SOURCE = "redis";
+    static final String LEDGER_SOURCE = "ledger";
 
-    public PaymentSummaryResource(GetSummary getSummary) {
+    private final GetSummary getSummary;
+    private final LedgerSummary ledgerSummary;
+    private final SummaryCache summaryCache;
+    private final boolean fromLedger;
+
+    public PaymentSummaryResource(GetSummary getSummary,
+                                  LedgerSummary ledgerSummary,
+                                  SummaryCache summaryCache,
+                                  @ConfigProperty(name = "app.summary-source") String summarySource) {
         this.getSummary = getSummary;
+        this.ledgerSummary = ledgerSummary;
+        this.summaryCache = summaryCache;
+        this.fromLedger = LEDGER_SOURCE.equals(summarySource);
     }
 
     @GET
     @Consumes(MediaType.APPLICATION_JSON)
-    public CompletableFuture<RestResponse<PaymentSummaryResponse>> summary(@QueryParam("from") Instant from,
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletableFuture<RestResponse<String>> summary(@QueryParam("from") Instant from,
                                                              @QueryParam("to") Instant to) {
 
-        return getSummary.summary(from, to)
-                .thenApply(RestResponse::ok);
+        // the watermark moves before ledgers catch up, so ledger summaries are never cached under it
+        CompletableFuture<PaymentSummaryResponse> summary = fromLedger
+                ? ledgerSummary.summary(from, to)
+                : summaryCache.summary(from, to, getSummary::summary);
+        return summary.thenApply(response -> RestResponse.ok(SummaryJson.write(response)));
 
     }
 }
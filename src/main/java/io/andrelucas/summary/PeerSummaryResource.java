@@ -0,0 +1,26 @@
+package io.andrelucas.summary;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestResponse;
+
+@Path("/internal/payments-summary")
+public class PeerSummaryResource {
+
+    private final PaymentLedger paymentLedger;
+
+    public PeerSummaryResource(final PaymentLedger paymentLedger) {
+        this.paymentLedger = paymentLedger;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestResponse<String> partial(@QueryParam("from") long from,
+                                                @QueryParam("to") long to) {
+
+        return RestResponse.ok(SummaryJson.write(paymentLedger.summarize(from, to).toPartial()));
+    }
+}
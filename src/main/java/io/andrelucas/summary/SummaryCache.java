@@ -0,0 +1,123 @@
+package io.andrelucas.summary;
+
+import io.vertx.mutiny.redis.client.RedisAPI;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU of computed Redis summaries, keyed by range and stamped with {@code payments:watermark}.
+ * Ledger summaries bypass it: the watermark moves in the record script, before any ledger has the rows.
+ * <p>
+ * A cached summary is served while the watermark has not moved since it was computed, so a call
+ * costs one GET instead of the range read. Identical requests at the same watermark share a
+ * single computation. Every hit is validated against the watermark: a payment may still be
+ * recorded far in the past (retries, reclaimed stream entries, work in flight on the other node),
+ * so no range is ever final.
+ */
+@ApplicationScoped
+public class SummaryCache {
+
+    private final RedisAPI redisAPI;
+    private final LongSupplier clock;
+    private final Map<Range, Entry> entries;
+    private final ConcurrentHashMap<Key, CompletableFuture<PaymentSummaryResponse>> computing = new ConcurrentHashMap<>();
+
+    public SummaryCache(final RedisAPI redisAPI,
+                        @ConfigProperty(name = "app.summary-cache-size") final int size) {
+        this(redisAPI, size, System::currentTimeMillis);
+    }
+
+    SummaryCache(final RedisAPI redisAPI,
+                 final int size,
+                 final LongSupplier clock) {
+        this.redisAPI = redisAPI;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Range, Entry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    public CompletableFuture<PaymentSummaryResponse> summary(
+            final Instant from,
+            final Instant to,
+            final BiFunction<Instant, Instant, CompletableFuture<PaymentSummaryResponse>> compute) {
+
+        Range range = new Range(from != null ? from.toEpochMilli() : 0,
+                to != null ? to.toEpochMilli() : clock.getAsLong());
+
+        return redisAPI.get(PaymentBuckets.WATERMARK_KEY)
+                .subscribe().asCompletionStage()
+                .thenCompose(watermark -> summary(range, watermark == null ? 0 : watermark.toLong(), compute));
+    }
+
+    CompletableFuture<PaymentSummaryResponse> summary(
+            final Range range,
+            final long watermark,
+            final BiFunction<Instant, Instant, CompletableFuture<PaymentSummaryResponse>> compute) {
+
+        Entry cached = cached(range);
+        if (cached != null && cached.watermark() == watermark) {
+            return CompletableFuture.completedFuture(cached.response());
+        }
+
+        Key key = new Key(range, watermark);
+        CompletableFuture<PaymentSummaryResponse> created = new CompletableFuture<>();
+        CompletableFuture<PaymentSummaryResponse> running = computing.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+
+        CompletableFuture<PaymentSummaryResponse> computed;
+        try {
+            computed = compute.apply(Instant.ofEpochMilli(range.from()), Instant.ofEpochMilli(range.to()));
+        } catch (RuntimeException e) {
+            computed = CompletableFuture.failedFuture(e);
+        }
+
+        computed.whenComplete((response, err) -> {
+            if (err == null) {
+                store(range, new Entry(watermark, response));
+            }
+            computing.remove(key, created);
+            if (err != null) {
+                created.completeExceptionally(err);
+            } else {
+                created.complete(response);
+            }
+        });
+        return created;
+    }
+
+    private Entry cached(final Range range) {
+        synchronized (entries) {
+            return entries.get(range);
+        }
+    }
+
+    private void store(final Range range, final Entry entry) {
+        synchronized (entries) {
+            Entry current = entries.get(range);
+            if (current == null || current.watermark() <= entry.watermark()) {
+                entries.put(range, entry);
+            }
+        }
+    }
+
+    record Range(long from, long to) {}
+
+    private record Key(Range range, long watermark) {}
+
+    private record Entry(long watermark, PaymentSummaryResponse response) {}
+}
@@ -0,0 +1,65 @@
+package io.andrelucas.summary;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Hand-written JSON for the summary responses, so the summary path needs no reflection, which
+ * matters for the native image.
+ */
+final class SummaryJson {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private SummaryJson() {
+    }
+
+    static String write(final PaymentSummaryResponse response) {
+        StringBuilder json = new StringBuilder(128).append("{\"default\":");
+        write(json, response.defaultStatus());
+        json.append(",\"fallback\":");
+        write(json, response.fallbackStatus());
+        return json.append('}').toString();
+    }
+
+    private static void write(final StringBuilder json, final PaymentSummaryResponse.IntegrationSummary summary) {
+        json.append("{\"totalRequests\":").append(summary.totalRequests())
+                .append(",\"totalAmount\":").append(summary.totalAmount().toPlainString())
+                .append('}');
+    }
+
+    static String write(final PartialSummary partial) {
+        return "{\"defaultRequests\":" + partial.defaultRequests()
+                + ",\"defaultCents\":" + partial.defaultCents()
+                + ",\"fallbackRequests\":" + partial.fallbackRequests()
+                + ",\"fallbackCents\":" + partial.fallbackCents()
+                + '}';
+    }
+
+    static PartialSummary readPartial(final byte[] json) throws IOException {
+        long defaultRequests = 0;
+        long defaultCents = 0;
+        long fallbackRequests = 0;
+        long fallbackCents = 0;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a partial summary object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "defaultRequests" -> defaultRequests = parser.getLongValue();
+                    case "defaultCents" -> defaultCents = parser.getLongValue();
+                    case "fallbackRequests" -> fallbackRequests = parser.getLongValue();
+                    case "fallbackCents" -> fallbackCents = parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new PartialSummary(defaultRequests, defaultCents, fallbackRequests, fallbackCents);
+    }
+}
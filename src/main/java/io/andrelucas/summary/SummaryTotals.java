@@ -0,0 +1,57 @@
+package io.andrelucas.summary;
+
+import java.math.BigDecimal;
+
+final class SummaryTotals {
+    private long defaultCount;
+    private long defaultCents;
+    private long fallbackCount;
+    private long fallbackCents;
+
+    void add(final String processor, final long count, final long cents) {
+        if ("default".equals(processor)) {
+            defaultCount += count;
+            defaultCents += cents;
+        } else if ("fallback".equals(processor)) {
+            fallbackCount += count;
+            fallbackCents += cents;
+        }
+    }
+
+    void addDefault(final long cents) {
+        defaultCount++;
+        defaultCents += cents;
+    }
+
+    void addFallback(final long cents) {
+        fallbackCount++;
+        fallbackCents += cents;
+    }
+
+    SummaryTotals merge(final SummaryTotals other) {
+        defaultCount += other.defaultCount;
+        defaultCents += other.defaultCents;
+        fallbackCount += other.fallbackCount;
+        fallbackCents += other.fallbackCents;
+        return this;
+    }
+
+    static SummaryTotals from(final PartialSummary partial) {
+        SummaryTotals totals = new SummaryTotals();
+        totals.defaultCount = partial.defaultRequests();
+        totals.defaultCents = partial.defaultCents();
+        totals.fallbackCount = partial.fallbackRequests();
+        totals.fallbackCents = partial.fallbackCents();
+        return totals;
+    }
+
+    PartialSummary toPartial() {
+        return new PartialSummary(defaultCount, defaultCents, fallbackCount, fallbackCents);
+    }
+
+    PaymentSummaryResponse toResponse() {
+        return new PaymentSummaryResponse(
+                new PaymentSummaryResponse.IntegrationSummary((int) defaultCount, BigDecimal.valueOf(defaultCents, 2)),
+                new PaymentSummaryResponse.IntegrationSummary((int) fallbackCount, BigDecimal.valueOf(fallbackCents, 2)));
+    }
+}
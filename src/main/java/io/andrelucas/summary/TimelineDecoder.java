@@ -0,0 +1,43 @@
+package io.andrelucas.summary;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Response;
+
+/**
+ * Single pass over a ZRANGEBYSCORE reply of {@code payments:timeline}: reads the varint amount and
+ * the processor tag straight from each binary member (see {@link PaymentBuckets}) and adds them to
+ * the totals, without building strings or intermediate records.
+ */
+final class TimelineDecoder {
+
+    private TimelineDecoder() {
+    }
+
+    static SummaryTotals decode(final Response members, final SummaryTotals totals) {
+        if (members == null) {
+            return totals;
+        }
+        for (int i = 0, size = members.size(); i < size; i++) {
+            decodeMember(members.get(i).toBuffer(), totals);
+        }
+        return totals;
+    }
+
+    static void decodeMember(final Buffer member, final SummaryTotals totals) {
+        int pos = PaymentBuckets.UUID_BYTES;
+        long cents = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = member.getByte(pos++);
+            cents |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        switch (member.getByte(pos)) {
+            case PaymentBuckets.DEFAULT_TAG -> totals.addDefault(cents);
+            case PaymentBuckets.FALLBACK_TAG -> totals.addFallback(cents);
+            default -> throw new IllegalArgumentException("Unknown processor tag in timeline member at " + pos);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.andrelucas.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How long a {@link SimulatedProcessor} takes to answer. Parsed from specs such as
+ * {@code constant:10}, {@code uniform:5-50} or {@code lognormal:20,0.6} (median in ms, sigma).
+ */
+interface LatencyDistribution {
+
+    long nextMillis();
+
+    /** Reported as {@code minResponseTime} by the service-health endpoint. */
+    long minimumMillis();
+
+    static LatencyDistribution parse(final String spec) {
+        String[] parts = spec.split(":", 2);
+        return switch (parts[0]) {
+            case "constant" -> constant(Long.parseLong(parts[1]));
+            case "uniform" -> {
+                String[] bounds = parts[1].split("-");
+                yield uniform(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+            }
+            case "lognormal" -> {
+                String[] params = parts[1].split(",");
+                yield logNormal(Long.parseLong(params[0]), Double.parseDouble(params[1]));
+            }
+            default -> throw new IllegalArgumentException("Unknown latency distribution " + spec);
+        };
+    }
+
+    static LatencyDistribution constant(final long millis) {
+        return new LatencyDistribution() {
+            public long nextMillis() {
+                return millis;
+            }
+
+            public long minimumMillis() {
+                return millis;
+            }
+        };
+    }
+
+    static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+        return new LatencyDistribution() {
+            public long nextMillis() {
+                return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+            }
+
+            public long minimumMillis() {
+                return minMillis;
+            }
+        };
+    }
+
+    static LatencyDistribution logNormal(final long medianMillis, final double sigma) {
+        return new LatencyDistribution() {
+            public long nextMillis() {
+                return Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+
+            public long minimumMillis() {
+                return 0;
+            }
+        };
+    }
+}
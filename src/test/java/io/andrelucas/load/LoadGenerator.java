@@ -0,0 +1,110 @@
+package io.andrelucas.load;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop driver for {@code POST /payments}: requests go out on a fixed schedule at the target
+ * rate whether or not earlier ones have been answered, like the k6 script of the challenge.
+ */
+final class LoadGenerator {
+
+    record Result(int sent, int accepted, int rejected, int failed, long elapsedNanos,
+                  long[] ingressLatencyNanos, Map<String, Long> sentAt) {
+
+        double throughput() {
+            return accepted * 1e9 / elapsedNanos;
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    static Result run(final URI baseUri, final int ratePerSecond, final Duration duration, final BigDecimal amount) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        URI payments = baseUri.resolve("/payments");
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long total = duration.toSeconds() * ratePerSecond;
+        long start = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            long due = start + i * periodNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String correlationId = UUID.randomUUID().toString();
+            HttpRequest request = HttpRequest.newBuilder(payments)
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"correlationId\":\"" + correlationId + "\",\"amount\":" + amount.toPlainString() + "}"))
+                    .build();
+
+            sentAt.put(correlationId, System.currentTimeMillis());
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, err) -> {
+                        // measured from the scheduled time, so queueing in the generator is not hidden
+                        latencies.add(System.nanoTime() - due);
+                        if (err != null) {
+                            failed.incrementAndGet();
+                        } else if (response.statusCode() / 100 == 2) {
+                            accepted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }));
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(err -> null)
+                .join();
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(inFlight.size(), accepted.get(), rejected.get(), failed.get(), elapsed, sorted, sentAt);
+    }
+
+    static long percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    static long[] sorted(final long[] values) {
+        long[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
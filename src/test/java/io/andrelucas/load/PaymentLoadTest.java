@@ -0,0 +1,129 @@
+package io.andrelucas.load;
+
+import io.andrelucas.summary.PaymentSummaryResponse;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the application at a target rate against the simulated processors and checks that
+ * {@code /payments-summary} matches what the processors received. Excluded from the default build,
+ * run with {@code ./mvnw -Pload test}; see {@link SimulatedProcessorsResource} for the knobs.
+ */
+@QuarkusTest
+@Tag("load")
+@WithTestResource(SimulatedProcessorsResource.class)
+class PaymentLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(PaymentLoadTest.class);
+
+    @TestHTTPResource
+    URI baseUri;
+
+    @Test
+    void summaryMatchesWhatTheProcessorsReceived() {
+        int rate = Integer.getInteger("load.rate", 500);
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration-in-s", 30));
+        Duration drainTimeout = Duration.ofSeconds(Long.getLong("load.drain-timeout-in-s", 30));
+        BigDecimal amount = new BigDecimal(System.getProperty("load.amount", "19.90"));
+        List<SimulatedProcessor> processors = List.of(
+                SimulatedProcessorsResource.defaultProcessor, SimulatedProcessorsResource.fallbackProcessor);
+
+        Instant from = Instant.now();
+        LoadGenerator.Result result = LoadGenerator.run(baseUri, rate, duration, amount);
+
+        long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        while (received(processors) < result.accepted() && System.nanoTime() < drainDeadline) {
+            sleep(100);
+        }
+        Instant to = Instant.now();
+
+        PaymentSummaryResponse summary = given()
+                .queryParam("from", from.toString())
+                .queryParam("to", to.toString())
+                .when().get("/payments-summary")
+                .then().statusCode(200)
+                .extract().as(PaymentSummaryResponse.class);
+
+        report(result, processors);
+
+        assertMatches(SimulatedProcessorsResource.defaultProcessor, summary.defaultStatus(), from, to);
+        assertMatches(SimulatedProcessorsResource.fallbackProcessor, summary.fallbackStatus(), from, to);
+    }
+
+    private static void report(final LoadGenerator.Result result, final List<SimulatedProcessor> processors) {
+        long[] ingress = result.ingressLatencyNanos();
+        Map<String, Long> sentAt = result.sentAt();
+        long[] lag = LoadGenerator.sorted(processors.stream()
+                .flatMap(processor -> processor.received().stream())
+                .filter(payment -> sentAt.containsKey(payment.correlationId()))
+                .mapToLong(payment -> payment.receivedAt() - sentAt.get(payment.correlationId()))
+                .toArray());
+
+        StringBuilder report = new StringBuilder()
+                .append(String.format("%nsent %d | accepted %d | rejected %d | failed %d | %.1f req/s over %.1f s",
+                        result.sent(), result.accepted(), result.rejected(), result.failed(),
+                        result.throughput(), result.elapsedNanos() / 1e9))
+                .append(String.format("%ningress latency ms  p50 %.2f | p99 %.2f | p999 %.2f | max %.2f",
+                        millis(LoadGenerator.percentile(ingress, 50)), millis(LoadGenerator.percentile(ingress, 99)),
+                        millis(LoadGenerator.percentile(ingress, 99.9)), millis(LoadGenerator.percentile(ingress, 100))))
+                .append(String.format("%nprocessing lag ms   p50 %d | p99 %d | p999 %d | max %d",
+                        LoadGenerator.percentile(lag, 50), LoadGenerator.percentile(lag, 99),
+                        LoadGenerator.percentile(lag, 99.9), LoadGenerator.percentile(lag, 100)));
+
+        for (SimulatedProcessor processor : processors) {
+            BigDecimal total = total(processor.received());
+            report.append(String.format("%n%-8s processed %d | amount %s | fees %s",
+                    processor.name(), processor.received().size(), total, total.multiply(processor.fee())));
+        }
+        log.info("Load test report:{}", report);
+    }
+
+    private static void assertMatches(final SimulatedProcessor processor,
+                                      final PaymentSummaryResponse.IntegrationSummary summary,
+                                      final Instant from,
+                                      final Instant to) {
+        List<SimulatedProcessor.Received> inRange = processor.received().stream()
+                .filter(payment -> payment.requestedAt() >= from.toEpochMilli() && payment.requestedAt() <= to.toEpochMilli())
+                .toList();
+
+        assertEquals(inRange.size(), summary.totalRequests(), processor.name() + " totalRequests");
+        assertEquals(0, total(inRange).compareTo(summary.totalAmount()),
+                processor.name() + " totalAmount " + total(inRange) + " != " + summary.totalAmount());
+    }
+
+    private static BigDecimal total(final Collection<SimulatedProcessor.Received> payments) {
+        return payments.stream().map(SimulatedProcessor.Received::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static int received(final List<SimulatedProcessor> processors) {
+        return processors.stream().mapToInt(processor -> processor.received().size()).sum();
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
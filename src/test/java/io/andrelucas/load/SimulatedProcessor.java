@@ -0,0 +1,162 @@
+package io.andrelucas.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for one payment processor, speaking the same API as the real ones.
+ * <p>
+ * Payments take a {@link LatencyDistribution} to answer and fail with 500 inside the failure windows
+ * (offsets from start). {@code /payments/service-health} answers once per health interval and 429
+ * otherwise. Every accepted payment is kept so the test can check the summary against it.
+ */
+final class SimulatedProcessor implements AutoCloseable {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    record Window(long fromMs, long toMs) {
+        static List<Window> parse(final String spec) {
+            List<Window> windows = new ArrayList<>();
+            if (spec != null && !spec.isBlank()) {
+                for (String window : spec.split(",")) {
+                    String[] bounds = window.trim().split("-");
+                    windows.add(new Window(Long.parseLong(bounds[0]), Long.parseLong(bounds[1])));
+                }
+            }
+            return windows;
+        }
+
+        boolean contains(final long elapsedMs) {
+            return elapsedMs >= fromMs && elapsedMs < toMs;
+        }
+    }
+
+    record Received(String correlationId, BigDecimal amount, long requestedAt, long receivedAt) {}
+
+    private final String name;
+    private final BigDecimal fee;
+    private final LatencyDistribution latency;
+    private final List<Window> failureWindows;
+    private final long healthIntervalInMs;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<String, Received> received = new ConcurrentHashMap<>();
+    private final AtomicLong lastHealthCheck = new AtomicLong(Long.MIN_VALUE / 2);
+    private final long startedAt = System.currentTimeMillis();
+    private final HttpServer server;
+
+    SimulatedProcessor(final String name,
+                       final BigDecimal fee,
+                       final LatencyDistribution latency,
+                       final List<Window> failureWindows,
+                       final long healthIntervalInMs) throws IOException {
+        this.name = name;
+        this.fee = fee;
+        this.latency = latency;
+        this.failureWindows = failureWindows;
+        this.healthIntervalInMs = healthIntervalInMs;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.server.createContext("/payments", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String name() {
+        return name;
+    }
+
+    BigDecimal fee() {
+        return fee;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    Collection<Received> received() {
+        return received.values();
+    }
+
+    private boolean failing() {
+        long elapsed = System.currentTimeMillis() - startedAt;
+        return failureWindows.stream().anyMatch(window -> window.contains(elapsed));
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && "/payments".equals(path)) {
+                pay(exchange);
+            } else if ("GET".equals(exchange.getRequestMethod()) && "/payments/service-health".equals(path)) {
+                health(exchange);
+            } else {
+                respond(exchange, 404, "");
+            }
+        }
+    }
+
+    private void pay(final HttpExchange exchange) throws IOException {
+        JsonNode body = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+        sleep(latency.nextMillis());
+
+        if (failing()) {
+            respond(exchange, 500, "{\"message\":\"internal server error\"}");
+            return;
+        }
+        String correlationId = body.get("correlationId").asText();
+        Received payment = new Received(correlationId, body.get("amount").decimalValue(),
+                Instant.parse(body.get("requestedAt").asText()).toEpochMilli(), System.currentTimeMillis());
+
+        if (received.putIfAbsent(correlationId, payment) != null) {
+            respond(exchange, 422, "{\"message\":\"correlationId already exists\"}");
+            return;
+        }
+        respond(exchange, 200, "{\"message\":\"payment processed successfully\"}");
+    }
+
+    private void health(final HttpExchange exchange) throws IOException {
+        long now = System.currentTimeMillis();
+        long last = lastHealthCheck.get();
+        if (now - last < healthIntervalInMs || !lastHealthCheck.compareAndSet(last, now)) {
+            respond(exchange, 429, "");
+            return;
+        }
+        respond(exchange, 200, "{\"failing\":" + failing() + ",\"minResponseTime\":" + latency.minimumMillis() + "}");
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,49 @@
+package io.andrelucas.load;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Starts the simulated default and fallback processors before the application and points
+ * {@code payment-processor.*.base-url} at them. Tunable through {@code load.*} system properties.
+ */
+public class SimulatedProcessorsResource implements QuarkusTestResourceLifecycleManager {
+
+    static SimulatedProcessor defaultProcessor;
+    static SimulatedProcessor fallbackProcessor;
+
+    @Override
+    public Map<String, String> start() {
+        long healthInterval = Long.getLong("load.health-interval-in-ms", 5000);
+        try {
+            defaultProcessor = new SimulatedProcessor("default", new BigDecimal("0.05"),
+                    LatencyDistribution.parse(System.getProperty("load.default.latency", "lognormal:10,0.5")),
+                    SimulatedProcessor.Window.parse(System.getProperty("load.default.failures", "10000-15000")),
+                    healthInterval);
+            fallbackProcessor = new SimulatedProcessor("fallback", new BigDecimal("0.15"),
+                    LatencyDistribution.parse(System.getProperty("load.fallback.latency", "lognormal:30,0.5")),
+                    SimulatedProcessor.Window.parse(System.getProperty("load.fallback.failures", "")),
+                    healthInterval);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return Map.of(
+                "payment-processor.default.base-url", defaultProcessor.baseUrl(),
+                "payment-processor.fallback.base-url", fallbackProcessor.baseUrl());
+    }
+
+    @Override
+    public void stop() {
+        if (defaultProcessor != null) {
+            defaultProcessor.close();
+        }
+        if (fallbackProcessor != null) {
+            fallbackProcessor.close();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.andrelucas.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void bucketsCoverEveryValueWithBoundedError() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 17, 1_000, 123_456, Long.MAX_VALUE}) {
+            int index = Histogram.indexOf(value);
+            assertTrue(Histogram.highestValueIn(index) >= value, "upper bound of " + value);
+            assertTrue(index == 0 || Histogram.highestValueIn(index - 1) < value, "lower bound of " + value);
+            assertTrue(Histogram.highestValueIn(index) - value <= value / 8, "error of " + value);
+        }
+    }
+
+    @Test
+    void reportsQuantilesCountSumAndMax() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(50_005_000, histogram.sum());
+        assertEquals(10_000, histogram.max());
+        assertEquals(5_000, histogram.quantile(0.5), 5_000 / 8.0);
+        assertEquals(9_900, histogram.quantile(0.99), 9_900 / 8.0);
+        assertEquals(10_000, histogram.quantile(1.0));
+    }
+}
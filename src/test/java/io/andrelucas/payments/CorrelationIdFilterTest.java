@@ -0,0 +1,31 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorrelationIdFilterTest {
+
+    @Test
+    void neverReportsAnAddedIdAsNew() {
+        CorrelationIdFilter filter = new CorrelationIdFilter(1 << 20, 4);
+        List<UUID> ids = new ArrayList<>();
+        int falsePositives = 0;
+        for (int i = 0; i < 50_000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            if (!filter.add(id)) {
+                falsePositives++;
+            }
+        }
+
+        ids.forEach(id -> assertFalse(filter.add(id)));
+        // ~0.3% expected at this load
+        assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+    }
+}
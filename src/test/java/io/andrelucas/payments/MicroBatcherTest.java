@@ -0,0 +1,51 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+    private static final Executor VIRTUAL = command -> Thread.ofVirtual().start(command);
+
+    @Test
+    void flushesFullBatchesAndThePartialOneAfterTheWindow() throws InterruptedException {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        MicroBatcher<Integer> batcher = new MicroBatcher<>(4, 1024, TimeUnit.MILLISECONDS.toNanos(5), batches::add);
+        batcher.start(VIRTUAL);
+
+        for (int i = 0; i < 10; i++) {
+            batcher.offer(i);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batches.stream().mapToInt(List::size).sum() < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), batches.stream().flatMap(List::stream).toList());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 4));
+
+        // idle in between: the next item still goes out on its own
+        batcher.offer(10);
+        while (batches.stream().mapToInt(List::size).sum() < 11 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(List.of(10), batches.get(batches.size() - 1));
+    }
+
+    @Test
+    void refusesOffersBeyondItsCapacity() {
+        MicroBatcher<Integer> batcher = new MicroBatcher<>(4, 2, TimeUnit.MILLISECONDS.toNanos(5), batch -> {});
+
+        assertTrue(batcher.offer(1));
+        assertTrue(batcher.offer(2));
+        assertFalse(batcher.offer(3));
+    }
+}
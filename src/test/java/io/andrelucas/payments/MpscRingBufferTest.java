@@ -0,0 +1,70 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void rejectsOffersWhenFullAndKeepsFifoOrder() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        assertTrue(ring.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertFalse(ring.isEmpty());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll());
+        }
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void deliversEveryElementFromConcurrentProducersOnce() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(1024);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(offset + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+
+        BitSet seen = new BitSet(producers * perProducer);
+        int received = 0;
+        while (received < producers * perProducer) {
+            Integer value = ring.poll();
+            if (value == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertFalse(seen.get(value), "duplicate " + value);
+            seen.set(value);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,60 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentPayloadEncoderTest {
+
+    private static final DateTimeFormatter ISO_MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(java.time.ZoneOffset.UTC);
+
+    @Test
+    void encodesProcessorPayloadAndTimelineMember() {
+        PaymentClient.PaymentClientRequest request = new PaymentClient.PaymentClientRequest(
+                "4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3", 1990, 1752582896007L);
+
+        PaymentPayloadEncoder.Payload payload = PaymentPayloadEncoder.encode(request);
+
+        assertEquals("{\"correlationId\":\"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3\",\"amount\":19.90," +
+                "\"requestedAt\":\"2025-07-15T12:34:56.007Z\"}", payload.processorBody().toString());
+
+        byte[] member = payload.timelineMember(Processor.FALLBACK, request.amountInCents());
+        ByteBuffer uuid = ByteBuffer.wrap(member, 0, 16);
+        assertEquals(UUID.fromString(request.correlationId()), new UUID(uuid.getLong(), uuid.getLong()));
+        assertEquals(19, member.length);
+        assertEquals((byte) (1990 & 0x7F | 0x80), member[16]);
+        assertEquals((byte) (1990 >>> 7), member[17]);
+        assertEquals('f', member[18]);
+        PaymentPayloadEncoder.release(payload);
+    }
+
+    @Test
+    void writesIsoInstantsLikeJavaTime() {
+        byte[] dst = new byte[32];
+        for (int i = 0; i < 10_000; i++) {
+            long millis = ThreadLocalRandom.current().nextLong(0, 253_402_300_799_999L);
+            int length = PaymentPayloadEncoder.writeIsoInstant(dst, 0, millis);
+
+            assertEquals(ISO_MILLIS.format(Instant.ofEpochMilli(millis)), new String(dst, 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void writesAndParsesCents() {
+        byte[] dst = new byte[32];
+        assertEquals("0.05", new String(dst, 0, PaymentPayloadEncoder.writeCents(dst, 0, 5), StandardCharsets.US_ASCII));
+        assertEquals("1234.50", new String(dst, 0, PaymentPayloadEncoder.writeCents(dst, 0, 123450), StandardCharsets.US_ASCII));
+
+        assertEquals(1990, Cents.parse("19.90"));
+        assertEquals(1990, Cents.parse("19.9"));
+        assertEquals(1900, Cents.parse("19"));
+    }
+}
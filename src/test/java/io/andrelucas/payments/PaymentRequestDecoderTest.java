@@ -0,0 +1,56 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PaymentRequestDecoderTest {
+
+    private static final String ID = "4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3";
+
+    @Test
+    void decodesBothFieldOrdersAndRoundsLikeCents() {
+        assertEquals(new PaymentRequestDecoder.Decoded(UUID.fromString(ID), 1990),
+                decode("{\"correlationId\":\"" + ID + "\",\"amount\":19.90}"));
+        assertEquals(new PaymentRequestDecoder.Decoded(UUID.fromString(ID), 1990),
+                decode(" {\n  \"amount\" : 19.9 ,\n  \"correlationId\" : \"" + ID.toUpperCase() + "\"\n} "));
+
+        for (String amount : new String[]{"0", "0.5", "7", "19.994", "19.995", "19.999", "123456.00001"}) {
+            assertEquals(Cents.of(new BigDecimal(amount)),
+                    decode("{\"correlationId\":\"" + ID + "\",\"amount\":" + amount + "}").amountInCents(), amount);
+        }
+    }
+
+    @Test
+    void rejectsMalformedBodies() {
+        String[] bodies = {
+                "",
+                "{}",
+                "{\"correlationId\":\"" + ID + "\"}",
+                "{\"amount\":19.90}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":19.90,\"extra\":1}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":19.90,\"amount\":1}",
+                "{\"correlationId\":\"" + ID.replace('a', 'g') + "\",\"amount\":19.90}",
+                "{\"correlationId\":\"" + ID.replace("-", "") + "\",\"amount\":19.90}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":-19.90}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":1e3}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":019.90}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":19.}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":\"19.90\"}",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":19.90}x",
+                "{\"correlationId\":\"" + ID + "\",\"amount\":19.90",
+        };
+        for (String body : bodies) {
+            assertNull(decode(body), body);
+        }
+    }
+
+    private static PaymentRequestDecoder.Decoded decode(final String body) {
+        return PaymentRequestDecoder.decode(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
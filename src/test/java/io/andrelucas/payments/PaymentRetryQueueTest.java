@@ -0,0 +1,36 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentRetryQueueTest {
+
+    private final PaymentRetryQueue retryQueue = new PaymentRetryQueue(null, 100, 5000, 30_000, 100);
+
+    @Test
+    void backoffGrowsExponentiallyWithJitterAndCap() {
+        for (int i = 0; i < 100; i++) {
+            long first = retryQueue.backoff(1);
+            assertTrue(first >= 50 && first <= 100, "first attempt: " + first);
+
+            long fourth = retryQueue.backoff(4);
+            assertTrue(fourth >= 400 && fourth <= 800, "fourth attempt: " + fourth);
+
+            long capped = retryQueue.backoff(40);
+            assertTrue(capped >= 2500 && capped <= 5000, "capped attempt: " + capped);
+        }
+    }
+
+    @Test
+    void decodesRetryMember() {
+        PaymentRetryQueue.Retry retry = PaymentRetryQueue.Retry.from("4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3|1990|1752582896000|3");
+
+        assertEquals("4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3", retry.request().correlationId());
+        assertEquals(1990, retry.request().amountInCents());
+        assertEquals(1752582896000L, retry.request().requestedAt());
+        assertEquals(3, retry.attempt());
+        assertEquals("4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3|1990|1752582896000|3", retry.member());
+    }
+}
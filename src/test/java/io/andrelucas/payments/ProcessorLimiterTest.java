@@ -0,0 +1,72 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessorLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long OPEN = TimeUnit.SECONDS.toNanos(1);
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ProcessorLimiter limiter = new ProcessorLimiter(1, 16, 4, TARGET, 0.5, 3, OPEN);
+
+    @Test
+    void growsAdditivelyOnFastCallsAndShrinksOnSlowOnes() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(0));
+        }
+        assertFalse(limiter.tryAcquire(0));
+
+        for (int i = 0; i < 4; i++) {
+            limiter.onSuccess(FAST, 0);
+        }
+        assertEquals(4, limiter.limit());
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(0);
+            limiter.onSuccess(FAST, 0);
+        }
+        assertEquals(5, limiter.limit());
+
+        limiter.tryAcquire(0);
+        limiter.onSuccess(SLOW, 0);
+        assertEquals(2, limiter.limit());
+
+        // within the same latency target window, further failures do not shrink it again
+        limiter.tryAcquire(0);
+        limiter.onFailure(TARGET - 1);
+        assertEquals(2, limiter.limit());
+        limiter.tryAcquire(0);
+        limiter.onFailure(TARGET);
+        assertEquals(1, limiter.limit());
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesThroughOneProbe() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(0));
+            limiter.onFailure(0);
+        }
+        assertEquals(ProcessorLimiter.State.OPEN, limiter.state());
+        assertFalse(limiter.tryAcquire(OPEN - 1));
+
+        assertTrue(limiter.tryAcquire(OPEN));
+        assertEquals(ProcessorLimiter.State.HALF_OPEN, limiter.state());
+        assertFalse(limiter.tryAcquire(OPEN));
+
+        limiter.onFailure(OPEN);
+        assertEquals(ProcessorLimiter.State.OPEN, limiter.state());
+        assertFalse(limiter.tryAcquire(OPEN + 1));
+
+        assertTrue(limiter.tryAcquire(2 * OPEN));
+        limiter.onSuccess(FAST, 2 * OPEN);
+        assertEquals(ProcessorLimiter.State.CLOSED, limiter.state());
+        assertTrue(limiter.tryAcquire(2 * OPEN));
+    }
+}
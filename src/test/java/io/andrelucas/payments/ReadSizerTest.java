@@ -0,0 +1,48 @@
+package io.andrelucas.payments;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadSizerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void growsOnFullReadsAndBacksOffWhenIdle() {
+        ReadSizer sizer = new ReadSizer(1, 64, 1, 1000, 50, 0);
+
+        long now = 0;
+        for (int expected : new int[]{2, 4, 8, 16, 32, 64, 64}) {
+            sizer.onRead(sizer.count(), sizer.count(), now += MS);
+            assertEquals(expected, sizer.count());
+            assertEquals(1, sizer.blockInMs());
+        }
+
+        sizer.onRead(64, 5, now += MS);
+        assertEquals(10, sizer.count());
+
+        for (long expected : new long[]{2, 4, 8, 16, 32, 64, 128, 256, 512, 1000, 1000}) {
+            sizer.onRead(sizer.count(), 0, now += MS);
+            assertEquals(1, sizer.count());
+            assertEquals(expected, sizer.blockInMs());
+        }
+    }
+
+    @Test
+    void neverReadsMoreThanTheNodeCompletesInOneWindow() {
+        ReadSizer sizer = new ReadSizer(1, 1000, 1, 1000, 50, 0);
+
+        long now = 0;
+        for (int i = 0; i < 20; i++) {
+            // 200 completions per 100ms read cycle: 2/ms, so at most 100 per 50ms window
+            for (int c = 0; c < 200; c++) {
+                sizer.completed();
+            }
+            sizer.onRead(sizer.count(), sizer.count(), now += 100 * MS);
+        }
+        assertEquals(100, sizer.count());
+    }
+}
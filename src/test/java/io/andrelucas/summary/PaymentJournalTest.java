@@ -0,0 +1,84 @@
+package io.andrelucas.summary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentJournalTest {
+
+    private static final Executor VIRTUAL = command -> Thread.ofVirtual().start(command);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rebuildsTheLedgerFromSnapshotAndSegments() throws Exception {
+        PaymentLedger ledger = new PaymentLedger();
+        // ten records per segment, so the run goes through several rolls and snapshots
+        PaymentJournal journal = open(ledger);
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            journal.record(1_000_000 + i * 3 - random.nextInt(5), random.nextBoolean(),
+                    1 + random.nextInt(100_000), UUID.randomUUID().toString());
+        }
+        journal.close();
+        // rows appended by a fold that crashed before patching the header
+        try (FileChannel channel = FileChannel.open(directory.resolve("ledger.snapshot"), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(3 * 17).putLong(0, 1_000_100).putLong(8, 4_200));
+        }
+
+        PaymentLedger restored = new PaymentLedger();
+        open(restored).close();
+
+        assertEquals(ledger.summarize(Long.MIN_VALUE, Long.MAX_VALUE).toPartial(),
+                restored.summarize(Long.MIN_VALUE, Long.MAX_VALUE).toPartial());
+        assertEquals(ledger.summarize(1_000_500, 1_002_000).toPartial(),
+                restored.summarize(1_000_500, 1_002_000).toPartial());
+    }
+
+    @Test
+    void stopsReplayingAtATornRecord() throws Exception {
+        PaymentLedger ledger = new PaymentLedger();
+        PaymentJournal journal = open(ledger);
+        journal.record(1_000, true, 1990, UUID.randomUUID().toString());
+        journal.record(2_000, false, 500, UUID.randomUUID().toString());
+        journal.close();
+
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 42), PaymentJournal.RECORD_BYTES + 8);
+        }
+
+        PaymentLedger restored = new PaymentLedger();
+        PaymentJournal reopened = open(restored);
+        assertEquals(new PartialSummary(1, 1990, 0, 0), restored.summarize(0, Long.MAX_VALUE).toPartial());
+
+        // the torn record is overwritten by the next append
+        reopened.record(3_000, false, 700, UUID.randomUUID().toString());
+        reopened.close();
+        PaymentLedger again = new PaymentLedger();
+        open(again).close();
+        assertEquals(new PartialSummary(1, 1990, 1, 700), again.summarize(0, Long.MAX_VALUE).toPartial());
+    }
+
+    private PaymentJournal open(final PaymentLedger ledger) {
+        PaymentJournal journal = new PaymentJournal(ledger, VIRTUAL, Optional.of(directory.toString()),
+                10 * PaymentJournal.RECORD_BYTES, 1);
+        journal.init();
+        return journal;
+    }
+}
@@ -0,0 +1,76 @@
+package io.andrelucas.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentLedgerTest {
+
+    private record Row(long requestedAt, boolean defaultProcessor, long cents) {}
+
+    @Test
+    void summarizesRangesAcrossChunksWithLateRows() {
+        PaymentLedger ledger = new PaymentLedger();
+        List<Row> rows = new ArrayList<>();
+        Random random = new Random(42);
+
+        long clock = 1_000_000;
+        for (int i = 0; i < 40_000; i++) {
+            clock += random.nextInt(3);
+            // a few rows show up late, a handful of milliseconds behind the newest one
+            long requestedAt = random.nextInt(10) == 0 ? clock - random.nextInt(20) : clock;
+            Row row = new Row(requestedAt, random.nextBoolean(), 1 + random.nextInt(100_000));
+            rows.add(row);
+            ledger.record(row.requestedAt(), row.defaultProcessor(), row.cents());
+        }
+
+        for (int i = 0; i < 200; i++) {
+            long from = 1_000_000 + random.nextInt(45_000);
+            long to = from + random.nextInt(20_000);
+            assertEquals(bruteForce(rows, from, to), ledger.summarize(from, to).toPartial());
+        }
+        assertEquals(bruteForce(rows, Long.MIN_VALUE, Long.MAX_VALUE),
+                ledger.summarize(Long.MIN_VALUE, Long.MAX_VALUE).toPartial());
+        assertEquals(new PartialSummary(0, 0, 0, 0), ledger.summarize(2_000_000, 1_000_000).toPartial());
+    }
+
+    @Test
+    void mergesRowsLateByMoreThanAChunk() {
+        PaymentLedger ledger = new PaymentLedger();
+        List<Row> rows = new ArrayList<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 60_000; i++) {
+            // every other row lands anywhere before the newest one, moving rows across chunk boundaries
+            long requestedAt = i % 2 == 0 ? 1_000_000 + i : 1_000_000 + random.nextInt(i + 1);
+            Row row = new Row(requestedAt, random.nextBoolean(), 1 + random.nextInt(100_000));
+            rows.add(row);
+            ledger.record(row.requestedAt(), row.defaultProcessor(), row.cents());
+        }
+
+        assertEquals(rows.size(), ledger.size());
+        for (int i = 0; i < 200; i++) {
+            long from = 1_000_000 + random.nextInt(60_000);
+            long to = from + random.nextInt(30_000);
+            assertEquals(bruteForce(rows, from, to), ledger.summarize(from, to).toPartial());
+        }
+    }
+
+    private static PartialSummary bruteForce(final List<Row> rows, final long from, final long to) {
+        SummaryTotals totals = new SummaryTotals();
+        rows.stream()
+                .filter(row -> row.requestedAt() >= from && row.requestedAt() <= to)
+                .forEach(row -> {
+                    if (row.defaultProcessor()) {
+                        totals.addDefault(row.cents());
+                    } else {
+                        totals.addFallback(row.cents());
+                    }
+                });
+        return totals.toPartial();
+    }
+}
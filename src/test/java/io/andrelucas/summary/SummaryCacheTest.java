@@ -0,0 +1,63 @@
+package io.andrelucas.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SummaryCacheTest {
+
+    private static final long NOW = 1_000_000;
+
+    private final SummaryCache cache = new SummaryCache(null, 16, () -> NOW);
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @Test
+    void sharesOneComputationAndReusesItUntilTheWatermarkMoves() {
+        CompletableFuture<PaymentSummaryResponse> pending = new CompletableFuture<>();
+        BiFunction<Instant, Instant, CompletableFuture<PaymentSummaryResponse>> compute = (from, to) -> {
+            computations.incrementAndGet();
+            return pending;
+        };
+        SummaryCache.Range range = new SummaryCache.Range(NOW - 100, NOW);
+
+        CompletableFuture<PaymentSummaryResponse> first = cache.summary(range, 7, compute);
+        CompletableFuture<PaymentSummaryResponse> second = cache.summary(range, 7, compute);
+        assertSame(first, second);
+
+        pending.complete(response(1));
+        assertEquals(response(1), cache.summary(range, 7, compute).join());
+        assertEquals(1, computations.get());
+
+        cache.summary(range, 8, (from, to) -> {
+            computations.incrementAndGet();
+            return CompletableFuture.completedFuture(response(2));
+        });
+        assertEquals(response(2), cache.summary(range, 8, compute).join());
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void recomputesOldRangesWhenALatePaymentMovesTheWatermark() {
+        SummaryCache.Range old = new SummaryCache.Range(0, NOW - 60_000);
+        BiFunction<Instant, Instant, CompletableFuture<PaymentSummaryResponse>> compute = (from, to) ->
+                CompletableFuture.completedFuture(response(computations.incrementAndGet()));
+
+        assertEquals(response(1), cache.summary(old, 1, compute).join());
+        assertEquals(response(1), cache.summary(old, 1, compute).join());
+        // e.g. a reclaimed stream entry recorded a minute after its requestedAt
+        assertEquals(response(2), cache.summary(old, 2, compute).join());
+    }
+
+    private static PaymentSummaryResponse response(final int requests) {
+        return new PaymentSummaryResponse(
+                new PaymentSummaryResponse.IntegrationSummary(requests, BigDecimal.valueOf(requests * 1990L, 2)),
+                new PaymentSummaryResponse.IntegrationSummary(0, BigDecimal.ZERO));
+    }
+}
@@ -0,0 +1,35 @@
+package io.andrelucas.summary;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimelineDecoderTest {
+
+    @Test
+    void sumsAmountsPerProcessorInCents() {
+        SummaryTotals totals = new SummaryTotals();
+        TimelineDecoder.decodeMember(member(1990, PaymentBuckets.DEFAULT_TAG), totals);
+        TimelineDecoder.decodeMember(member(10, PaymentBuckets.DEFAULT_TAG), totals);
+        TimelineDecoder.decodeMember(member(10_000_000_00L, PaymentBuckets.FALLBACK_TAG), totals);
+
+        PaymentSummaryResponse response = totals.toResponse();
+        assertEquals(2, response.defaultStatus().totalRequests());
+        assertEquals(new BigDecimal("20.00"), response.defaultStatus().totalAmount());
+        assertEquals(1, response.fallbackStatus().totalRequests());
+        assertEquals(new BigDecimal("10000000.00"), response.fallbackStatus().totalAmount());
+    }
+
+    private static Buffer member(long cents, final byte tag) {
+        Buffer member = Buffer.buffer();
+        member.appendBytes(new byte[PaymentBuckets.UUID_BYTES]);
+        while ((cents & ~0x7FL) != 0) {
+            member.appendByte((byte) ((cents & 0x7F) | 0x80));
+            cents >>>= 7;
+        }
+        return member.appendByte((byte) cents).appendByte(tag);
+    }
+}